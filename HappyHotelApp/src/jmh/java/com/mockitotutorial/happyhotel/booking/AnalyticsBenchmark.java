@@ -0,0 +1,96 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A year of occupancy and revenue over 10,000,000 bookings with
+ * {@link BookingAnalytics} on the common fork/join pool, against iterating the
+ * DAO by hand and pricing one booking at a time. Ten million bookings in the
+ * heap storage mode do not fit the fork's 3 GB, so run the columnar mode or
+ * fewer bookings:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="AnalyticsBenchmark -p storageMode=COLUMNAR"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+
+	private static final LocalDate FIRST_NIGHT = LocalDate.of(2020, 01, 01);
+	private static final int NIGHTS = 366;
+
+	@Param({ "10000000" })
+	private int bookingCount;
+
+	@Param({ "COLUMNAR", "HEAP" })
+	private StorageMode storageMode;
+
+	private BookingDAO bookingDAO;
+	private RoomService roomService;
+	private PricingEngine pricingEngine;
+	private BookingAnalytics analytics;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		List<Room> rooms = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			rooms.add(new Room(String.valueOf(i), 1 + i % 5));
+		}
+		roomService = new RoomService(rooms,
+				Clock.fixed(FIRST_NIGHT.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC), NIGHTS);
+		RatePlan ratePlan = new RatePlan(50.0);
+		ratePlan.addSeason(LocalDate.of(2020, 07, 01), LocalDate.of(2020, 9, 01), 150);
+		ratePlan.setWeekendPercent(120);
+		ratePlan.setGuestTierPercent(3, 90);
+		pricingEngine = new PricingEngine(ratePlan, FIRST_NIGHT, NIGHTS);
+		bookingDAO = new BookingDAO(storageMode);
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < bookingCount; i++) {
+			LocalDate dateFrom = FIRST_NIGHT.plusDays(random.nextInt(NIGHTS + 30) - 30);
+			BookingRequest bookingRequest = new BookingRequest(String.valueOf(random.nextInt(100_000)), dateFrom,
+					dateFrom.plusDays(1 + random.nextInt(7)), 1 + random.nextInt(5), false);
+			bookingRequest.setRoomId(String.valueOf(random.nextInt(rooms.size())));
+			bookingDAO.save(bookingRequest);
+		}
+		analytics = new BookingAnalytics(bookingDAO, roomService, pricingEngine);
+	}
+
+	@Benchmark
+	public OccupancyReport analytics() {
+		return analytics.analyze(FIRST_NIGHT, FIRST_NIGHT.plusDays(NIGHTS));
+	}
+
+	@Benchmark
+	public double byHand() {
+		int[] occupiedRooms = new int[NIGHTS];
+		double revenue = 0;
+		LocalDate end = FIRST_NIGHT.plusDays(NIGHTS);
+		for (BookingRequest bookingRequest : bookingDAO.findByDateFrom(LocalDate.MIN, LocalDate.MAX).values()) {
+			if (bookingRequest.getDateTo().isAfter(FIRST_NIGHT) && bookingRequest.getDateFrom().isBefore(end)) {
+				revenue += pricingEngine.price(bookingRequest);
+				for (LocalDate night = bookingRequest.getDateFrom(); night.isBefore(bookingRequest.getDateTo());
+						night = night.plusDays(1)) {
+					int index = (int) (night.toEpochDay() - FIRST_NIGHT.toEpochDay());
+					if (index >= 0 && index < NIGHTS) {
+						occupiedRooms[index]++;
+					}
+				}
+			}
+		}
+		return revenue + occupiedRooms[0];
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One 1,000-request block through makeBookings against the same block booked
+ * with a makeBooking loop. The inventory is rebuilt before every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBookingBenchmark {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+
+	@Param({ "1000" })
+	private int batchSize;
+
+	@Param({ "100" })
+	private int payers;
+
+	private BookingService bookingService;
+	private List<BookingRequest> bookingRequests;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+		List<Room> rooms = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			rooms.add(new Room(String.valueOf(i), 3));
+		}
+		RoomService roomService = new RoomService(rooms,
+				Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC), 365);
+		MailSender mailSender = new MailSender() {
+			@Override
+			public void sendBookingConfirmation(String bookingId) {
+			}
+		};
+		bookingService = new BookingService(new PaymentService(), roomService, new BookingDAO(), mailSender);
+		bookingRequests = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			bookingRequests.add(new BookingRequest(String.valueOf(i % payers), TODAY.plusDays(i % 300),
+					TODAY.plusDays(i % 300 + 3), 3, true));
+		}
+	}
+
+	@Benchmark
+	public List<String> loop() {
+		List<String> bookingIds = new ArrayList<>(batchSize);
+		for (BookingRequest bookingRequest : bookingRequests) {
+			bookingIds.add(bookingService.makeBooking(bookingRequest));
+		}
+		return bookingIds;
+	}
+
+	@Benchmark
+	public List<BookingResult> batch() {
+		return bookingService.makeBookings(bookingRequests);
+	}
+
+}
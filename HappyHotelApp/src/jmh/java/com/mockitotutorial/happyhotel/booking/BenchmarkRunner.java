@@ -0,0 +1,40 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks once per thread count listed in the
+ * {@code jmh.threads} system property (comma separated, default 1), since JMH
+ * takes a single thread count per run. Each run writes its results as JSON to
+ * {@code jmh-result-t<threads>.json} in the {@code jmh.result} directory so
+ * they can be compared between releases. Any other JMH option is passed
+ * through:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.threads=1,4,16 -Djmh.args="BookingEngineBenchmark -p roomCount=5,1000"
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		File resultDirectory = new File(System.getProperty("jmh.result", "target/jmh"));
+		resultDirectory.mkdirs();
+		for (String threads : System.getProperty("jmh.threads", "1").split(",")) {
+			Options options = new OptionsBuilder()
+					.parent(commandLine)
+					.threads(Integer.parseInt(threads.trim()))
+					.resultFormat(ResultFormatType.JSON)
+					.result(new File(resultDirectory, "jmh-result-t" + threads.trim() + ".json").getPath())
+					.build();
+			new Runner(options).run();
+		}
+	}
+
+}
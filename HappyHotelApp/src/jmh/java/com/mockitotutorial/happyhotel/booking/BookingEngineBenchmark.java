@@ -0,0 +1,138 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Throughput and latency of the booking engine's hot paths against inventories
+ * of 5 to 1,000,000 rooms. Every other room is booked for the first 30 nights
+ * so lookups have to skip occupied rooms. Threads share one inventory; each
+ * thread books and unbooks only its own slice of rooms, so the pair succeeds
+ * unless there are more threads than rooms. Run through {@link BenchmarkRunner} to sweep thread counts:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.threads=1,2,4,8 -Djmh.args=BookingEngineBenchmark
+ * </pre>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BookingEngineBenchmark {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+	private static final int NIGHTS = 365;
+	private static final int MAX_CAPACITY = 5;
+
+	@State(Scope.Benchmark)
+	public static class Inventory {
+
+		@Param({ "5", "1000", "100000", "1000000" })
+		private int roomCount;
+
+		private RoomService roomService;
+		private BookingService bookingService;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			List<Room> rooms = new ArrayList<>(roomCount);
+			for (int i = 0; i < roomCount; i++) {
+				rooms.add(new Room(String.valueOf(i), 1 + i % MAX_CAPACITY));
+			}
+			roomService = new RoomService(rooms,
+					Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC), NIGHTS);
+			for (int i = 0; i < roomCount; i += 2) {
+				roomService.bookRoom(String.valueOf(i), TODAY, TODAY.plusDays(30));
+			}
+			MailSender mailSender = new MailSender() {
+				@Override
+				public void sendBookingConfirmation(String bookingId) {
+				}
+			};
+			bookingService = new BookingService(new PaymentService(), roomService, new BookingDAO(), mailSender);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Requests {
+
+		private final SplittableRandom random = new SplittableRandom();
+		private String[] ownRooms;
+
+		@Setup(Level.Trial)
+		public void setup(Inventory inventory, ThreadParams threadParams) {
+			int threadIndex = threadParams.getThreadIndex() % inventory.roomCount;
+			int threadCount = Math.min(threadParams.getThreadCount(), inventory.roomCount);
+			List<String> rooms = new ArrayList<>();
+			for (int i = threadIndex; i < inventory.roomCount; i += threadCount) {
+				rooms.add(String.valueOf(i));
+			}
+			ownRooms = rooms.toArray(new String[0]);
+		}
+
+		BookingRequest next() {
+			int from = random.nextInt(60);
+			return new BookingRequest("1", TODAY.plusDays(from), TODAY.plusDays(from + 1 + random.nextInt(7)),
+					1 + random.nextInt(MAX_CAPACITY), false);
+		}
+
+		String ownRoom() {
+			return ownRooms[random.nextInt(ownRooms.length)];
+		}
+	}
+
+	@Benchmark
+	public String findAvailableRoomId(Inventory inventory, Requests requests) {
+		try {
+			return inventory.roomService.findAvailableRoomId(requests.next());
+		} catch (BusinessException e) {
+			return null;
+		}
+	}
+
+	@Benchmark
+	public void bookAndUnbookRoom(Inventory inventory, Requests requests) {
+		String roomId = requests.ownRoom();
+		LocalDate from = TODAY.plusDays(300 + requests.random.nextInt(50));
+		LocalDate to = from.plusDays(1 + requests.random.nextInt(7));
+		try {
+			inventory.roomService.bookRoom(roomId, from, to);
+		} catch (BusinessException e) {
+			// more threads than rooms, another thread holds this one
+			return;
+		}
+		inventory.roomService.unbookRoom(roomId, from, to);
+	}
+
+	@Benchmark
+	public String makeAndCancelBooking(Inventory inventory, Requests requests) {
+		String bookingId;
+		try {
+			bookingId = inventory.bookingService.makeBooking(requests.next());
+		} catch (BusinessException e) {
+			return null;
+		}
+		inventory.bookingService.cancelBooking(bookingId);
+		return bookingId;
+	}
+
+	@Benchmark
+	public double calculatePrice(Inventory inventory, Requests requests) {
+		return inventory.bookingService.calculatePrice(requests.next());
+	}
+
+	@Benchmark
+	public int getAvailablePlaceCount(Inventory inventory) {
+		return inventory.bookingService.getAvailablePlaceCount();
+	}
+
+}
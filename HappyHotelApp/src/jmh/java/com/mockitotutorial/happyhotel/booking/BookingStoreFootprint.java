@@ -0,0 +1,54 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Heap retained by {@link BookingDAO} per storage mode after saving the given
+ * number of bookings (default 10,000,000), spread over 100,000 users, 10,000
+ * rooms and two years of arrival dates. The modes run one after another in
+ * the same JVM, so give it enough memory for the heap mode:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.jvm=-Xmx6g -Djmh.main=com.mockitotutorial.happyhotel.booking.BookingStoreFootprint -Djmh.args="10000000 COLUMNAR HEAP"
+ * </pre>
+ */
+public class BookingStoreFootprint {
+
+	private static final LocalDate FIRST_NIGHT = LocalDate.of(2020, 01, 01);
+
+	public static void main(String[] args) {
+		int bookings = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+		String[] modes = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length)
+				: new String[] { StorageMode.COLUMNAR.name(), StorageMode.HEAP.name() };
+		for (String mode : modes) {
+			long before = usedHeap();
+			BookingDAO bookingDAO = fill(new BookingDAO(StorageMode.valueOf(mode)), bookings);
+			long retained = usedHeap() - before;
+			System.out.printf("%-8s %,12d bookings %,10d MB %6.1f bytes/booking%n", mode, bookingDAO.size(),
+					retained >> 20, (double) retained / bookingDAO.size());
+		}
+	}
+
+	private static BookingDAO fill(BookingDAO bookingDAO, int bookings) {
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < bookings; i++) {
+			LocalDate dateFrom = FIRST_NIGHT.plusDays(random.nextInt(730));
+			BookingRequest bookingRequest = new BookingRequest(String.valueOf(random.nextInt(100_000)), dateFrom,
+					dateFrom.plusDays(1 + random.nextInt(7)), 1 + random.nextInt(5), random.nextBoolean());
+			bookingRequest.setRoomId(String.valueOf(random.nextInt(10_000)));
+			bookingDAO.save(bookingRequest);
+		}
+		return bookingDAO;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
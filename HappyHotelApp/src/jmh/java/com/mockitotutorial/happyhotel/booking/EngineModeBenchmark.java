@@ -0,0 +1,92 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * makeBooking plus cancelBooking on one hot room class, with producers
+ * claiming rooms themselves (CONCURRENT) against handing every mutation to
+ * the single writer (SINGLE_WRITER). Sweep producers through
+ * {@link BenchmarkRunner}:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.threads=1,2,4,8,16,32,64 -Djmh.args=EngineModeBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineModeBenchmark {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+
+	@State(Scope.Benchmark)
+	public static class Engine {
+
+		@Param({ "CONCURRENT", "SINGLE_WRITER" })
+		private EngineMode engineMode;
+
+		@Param({ "200" })
+		private int roomCount;
+
+		private RoomService roomService;
+		private BookingService bookingService;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			List<Room> rooms = new ArrayList<>(roomCount);
+			for (int i = 0; i < roomCount; i++) {
+				rooms.add(new Room(String.valueOf(i), 2));
+			}
+			roomService = new RoomService(rooms,
+					Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC), 365);
+			MailSender mailSender = new MailSender() {
+				@Override
+				public void sendBookingConfirmation(String bookingId) {
+				}
+			};
+			bookingService = new BookingService(new PaymentService(), roomService, new BookingDAO(), mailSender,
+					engineMode);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			bookingService.close();
+			roomService.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Requests {
+
+		private final SplittableRandom random = new SplittableRandom();
+
+		BookingRequest next() {
+			int from = random.nextInt(30);
+			return new BookingRequest("1", TODAY.plusDays(from), TODAY.plusDays(from + 1 + random.nextInt(3)), 2,
+					false);
+		}
+	}
+
+	@Benchmark
+	public String makeAndCancelBooking(Engine engine, Requests requests) {
+		String bookingId;
+		try {
+			bookingId = engine.bookingService.makeBooking(requests.next());
+		} catch (BusinessException e) {
+			return null;
+		}
+		engine.bookingService.cancelBooking(bookingId);
+		return bookingId;
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Ids per second from UUID.randomUUID() against the time-ordered generator,
+ * swept from 1 to 32 threads:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.threads=1,2,4,8,16,32 -Djmh.args=IdGeneratorBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+	private final IdGenerator idGenerator = new TimeOrderedIdGenerator();
+
+	@Benchmark
+	public String uuid() {
+		return UUID.randomUUID().toString();
+	}
+
+	@Benchmark
+	public long timeOrdered() {
+		return idGenerator.nextId();
+	}
+
+	@Benchmark
+	public String timeOrderedString() {
+		return idGenerator.nextIdString();
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Writes per second of a durable BookingDAO with fsync per operation against
+ * group commit. Group commit only pays off with concurrent writers, hence the
+ * fixed thread count.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+	@Param({ "SYNC", "GROUP_COMMIT" })
+	private Journal.Durability durability;
+
+	private Path directory;
+	private Journal journal;
+	private BookingDAO bookingDAO;
+	private BookingRequest bookingRequest;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("journal-benchmark");
+		journal = new Journal(directory.resolve("bookings.journal"), durability);
+		bookingDAO = new BookingDAO(journal);
+		bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05), 2, true);
+		bookingRequest.setRoomId("1.1");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		journal.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public String save() {
+		return bookingDAO.save(bookingRequest);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds: exact below 128 ns, then
+ * 64 buckets per power of two, so any recorded value is reported within
+ * 1.6%. Not thread-safe; give each thread its own and {@link #merge} them.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 64;
+
+	private final long[] counts = new long[SUB_BUCKETS * 58];
+	private long count;
+	private long sum;
+	private long max;
+
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		counts[bucket(value)]++;
+		count++;
+		sum += value;
+		max = Math.max(max, value);
+	}
+
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	private static int bucket(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 6;
+		return SUB_BUCKETS * shift + (int) (value >>> shift);
+	}
+
+	private static long highestValue(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long mantissa = bucket - SUB_BUCKETS * shift;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+}
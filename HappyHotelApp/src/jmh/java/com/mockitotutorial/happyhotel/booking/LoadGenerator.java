@@ -0,0 +1,392 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays synthetic booking traffic against a {@link BookingService} built on
+ * the real {@link RoomService} and {@link BookingDAO}, with in-process stubs
+ * for payment and mail. Each worker thread issues its share of the arrival
+ * rate as a Poisson process, open loop: latency is measured from when an
+ * operation was due, not when the worker got to it, so a stalled service
+ * shows up in the percentiles instead of slowing the load down. Operations
+ * are drawn from a mix of makeBooking, cancelBooking (of a booking the
+ * worker made; a worker with none books instead) and getAvailablePlaceCount;
+ * guest counts and stay lengths are drawn from weighted distributions.
+ * Results after the warmup are printed as a table and written as JSON:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=com.mockitotutorial.happyhotel.booking.LoadGenerator \
+ *     -Djmh.args="rate=20000 duration=30 threads=8 guests=1:25,2:45,3:15,4:10,5:5 stays=1:40,2:30,3:20,7:10"
+ * </pre>
+ *
+ * Options, as key=value: rate (operations per second, all threads), duration
+ * and warmup (seconds), threads, rooms, nights (booking horizon), guests and
+ * stays (value:weight lists), mix (book,cancel,count weights), prepaid
+ * (fraction), paymentMicros (stub payment delay), paymentSlots (payments the
+ * stub serves at once, 0 for no limit), admission (latency target in
+ * milliseconds for an {@link AdmissionControlledBookingService}, 0 for none),
+ * engine ({@link EngineMode}), storage ({@link StorageMode}) and output (JSON
+ * file, by default load-result.json in the jmh.result directory). Requests
+ * refused by admission control count as rejected and are also reported as
+ * shed. To see it keep latency in check, overload a slow payment provider with
+ * and without it:
+ *
+ * <pre>
+ * -Djmh.args="rate=3000 threads=200 prepaid=1 paymentMicros=2000 paymentSlots=4 admission=20"
+ * </pre>
+ */
+public class LoadGenerator {
+
+	private enum Operation {
+
+		MAKE_BOOKING("makeBooking"), CANCEL_BOOKING("cancelBooking"), GET_AVAILABLE_PLACE_COUNT(
+				"getAvailablePlaceCount");
+
+		private final String label;
+
+		Operation(String label) {
+			this.label = label;
+		}
+	}
+
+	private static class Distribution {
+
+		private final int[] values;
+		private final double[] cumulativeWeights;
+
+		Distribution(String spec) {
+			String[] entries = spec.split(",");
+			values = new int[entries.length];
+			cumulativeWeights = new double[entries.length];
+			double total = 0;
+			for (int i = 0; i < entries.length; i++) {
+				String[] entry = entries[i].split(":");
+				values[i] = Integer.parseInt(entry[0].trim());
+				total += entry.length > 1 ? Double.parseDouble(entry[1].trim()) : 1;
+				cumulativeWeights[i] = total;
+			}
+			for (int i = 0; i < entries.length; i++) {
+				cumulativeWeights[i] /= total;
+			}
+		}
+
+		int sample(SplittableRandom random) {
+			double point = random.nextDouble();
+			for (int i = 0; i < values.length - 1; i++) {
+				if (point < cumulativeWeights[i]) {
+					return values[i];
+				}
+			}
+			return values[values.length - 1];
+		}
+
+		int max() {
+			return Arrays.stream(values).max().getAsInt();
+		}
+	}
+
+	private static class Config {
+
+		private final Map<String, String> options = new LinkedHashMap<>();
+
+		Config(String[] args) {
+			options.put("rate", "10000");
+			options.put("duration", "10");
+			options.put("warmup", "2");
+			options.put("threads", "4");
+			options.put("rooms", "1000");
+			options.put("nights", "365");
+			options.put("guests", "1:25,2:45,3:15,4:10,5:5");
+			options.put("stays", "1:20,2:25,3:20,4:12,5:8,6:5,7:10");
+			options.put("mix", "60,25,15");
+			options.put("prepaid", "0.5");
+			options.put("paymentMicros", "0");
+			options.put("paymentSlots", "0");
+			options.put("admission", "0");
+			options.put("engine", EngineMode.CONCURRENT.name());
+			options.put("storage", StorageMode.HEAP.name());
+			options.put("output", Paths.get(System.getProperty("jmh.result", "target/jmh"), "load-result.json")
+					.toString());
+			for (String arg : args) {
+				int separator = arg.indexOf('=');
+				if (separator < 0 || !options.containsKey(arg.substring(0, separator))) {
+					throw new IllegalArgumentException("Expected one of " + options.keySet() + " as key=value: " + arg);
+				}
+				options.put(arg.substring(0, separator), arg.substring(separator + 1));
+			}
+		}
+
+		String get(String key) {
+			return options.get(key);
+		}
+
+		int getInt(String key) {
+			return Integer.parseInt(options.get(key));
+		}
+
+		double getDouble(String key) {
+			return Double.parseDouble(options.get(key));
+		}
+
+		double[] getCumulativeWeights(String key, int count) {
+			String[] weights = options.get(key).split(",");
+			if (weights.length != count) {
+				throw new IllegalArgumentException("Expected " + count + " weights for " + key + ": " + options.get(key));
+			}
+			double[] cumulative = new double[count];
+			double total = 0;
+			for (int i = 0; i < count; i++) {
+				total += Double.parseDouble(weights[i].trim());
+				cumulative[i] = total;
+			}
+			for (int i = 0; i < count; i++) {
+				cumulative[i] /= total;
+			}
+			return cumulative;
+		}
+	}
+
+	private static class Worker extends Thread {
+
+		private final BookingService bookingService;
+		private final Config config;
+		private final Distribution guests;
+		private final Distribution stays;
+		private final double[] mix;
+		private final long measureFrom;
+		private final long measureTo;
+		private final CountDownLatch start;
+		private final SplittableRandom random;
+		private final Deque<String> ownBookings = new ArrayDeque<>();
+		private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+		private final long[] rejections = new long[Operation.values().length];
+		private final long[] shed = new long[Operation.values().length];
+
+		Worker(int index, BookingService bookingService, Config config, long measureFrom, long measureTo,
+				CountDownLatch start) {
+			super("load-" + index);
+			this.bookingService = bookingService;
+			this.config = config;
+			this.guests = new Distribution(config.get("guests"));
+			this.stays = new Distribution(config.get("stays"));
+			this.mix = config.getCumulativeWeights("mix", Operation.values().length);
+			this.measureFrom = measureFrom;
+			this.measureTo = measureTo;
+			this.start = start;
+			this.random = new SplittableRandom(index);
+			for (int i = 0; i < latencies.length; i++) {
+				latencies[i] = new LatencyHistogram();
+			}
+		}
+
+		@Override
+		public void run() {
+			double meanGapNanos = TimeUnit.SECONDS.toNanos(1) * config.getInt("threads") / config.getDouble("rate");
+			int horizon = Math.max(1, config.getInt("nights") - stays.max());
+			try {
+				start.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+			long due = System.nanoTime();
+			while ((due += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos)) < measureTo) {
+				long wait;
+				while ((wait = due - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				Operation operation = next();
+				BusinessException rejected = apply(operation, horizon);
+				if (due >= measureFrom) {
+					latencies[operation.ordinal()].record(System.nanoTime() - due);
+					if (rejected != null) {
+						rejections[operation.ordinal()]++;
+					}
+					if (rejected instanceof OverloadedException) {
+						shed[operation.ordinal()]++;
+					}
+				}
+			}
+		}
+
+		private Operation next() {
+			double point = random.nextDouble();
+			if (point < mix[0] || (point < mix[1] && ownBookings.isEmpty())) {
+				return Operation.MAKE_BOOKING;
+			}
+			return point < mix[1] ? Operation.CANCEL_BOOKING : Operation.GET_AVAILABLE_PLACE_COUNT;
+		}
+
+		private BusinessException apply(Operation operation, int horizon) {
+			switch (operation) {
+			case MAKE_BOOKING:
+				LocalDate dateFrom = LocalDate.now().plusDays(random.nextInt(horizon));
+				BookingRequest bookingRequest = new BookingRequest(getName(), dateFrom,
+						dateFrom.plusDays(stays.sample(random)), guests.sample(random),
+						random.nextDouble() < config.getDouble("prepaid"));
+				try {
+					ownBookings.add(bookingService.makeBooking(bookingRequest));
+					return null;
+				} catch (BusinessException e) {
+					return e;
+				}
+			case CANCEL_BOOKING:
+				String bookingId = ownBookings.poll();
+				try {
+					bookingService.cancelBooking(bookingId);
+					return null;
+				} catch (OverloadedException e) {
+					ownBookings.addFirst(bookingId);
+					return e;
+				}
+			default:
+				bookingService.getAvailablePlaceCount();
+				return null;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Config config = new Config(args);
+		List<Room> rooms = new ArrayList<>();
+		for (int i = 0; i < config.getInt("rooms"); i++) {
+			rooms.add(new Room(String.valueOf(i), 1 + i % 5));
+		}
+		long paymentNanos = TimeUnit.MICROSECONDS.toNanos(config.getInt("paymentMicros"));
+		Semaphore paymentSlots = config.getInt("paymentSlots") > 0 ? new Semaphore(config.getInt("paymentSlots"), true)
+				: null;
+		PaymentService paymentService = new PaymentService() {
+			@Override
+			public String pay(BookingRequest bookingRequest, double price) {
+				if (paymentSlots != null) {
+					paymentSlots.acquireUninterruptibly();
+				}
+				try {
+					if (paymentNanos > 0) {
+						LockSupport.parkNanos(paymentNanos);
+					}
+				} finally {
+					if (paymentSlots != null) {
+						paymentSlots.release();
+					}
+				}
+				return "stub";
+			}
+		};
+		MailSender mailSender = new MailSender() {
+			@Override
+			public void sendBookingConfirmation(String bookingId) {
+			}
+		};
+		RoomService roomService = new RoomService(rooms, Clock.systemDefaultZone(), config.getInt("nights"));
+		BookingDAO bookingDAO = new BookingDAO(StorageMode.valueOf(config.get("storage")));
+		EngineMode engineMode = EngineMode.valueOf(config.get("engine"));
+		BookingService bookingService = config.getInt("admission") > 0
+				? new AdmissionControlledBookingService(paymentService, roomService, bookingDAO, mailSender,
+						new PricingEngine(), engineMode,
+						new ConcurrencyLimiter(20, 1, 1_000, config.getInt("admission"), TimeUnit.MILLISECONDS),
+						new ConcurrencyLimiter(32))
+				: new BookingService(paymentService, roomService, bookingDAO, mailSender, engineMode);
+
+		int threads = config.getInt("threads");
+		CountDownLatch start = new CountDownLatch(1);
+		long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getInt("warmup"));
+		long measureTo = measureFrom + TimeUnit.SECONDS.toNanos(config.getInt("duration"));
+		List<Worker> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			Worker worker = new Worker(i, bookingService, config, measureFrom, measureTo, start);
+			workers.add(worker);
+			worker.start();
+		}
+		start.countDown();
+		for (Worker worker : workers) {
+			worker.join();
+		}
+		long elapsedNanos = Math.max(System.nanoTime(), measureTo) - measureFrom;
+		bookingService.close();
+		roomService.close();
+
+		LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+		long[] rejections = new long[latencies.length];
+		long[] shed = new long[latencies.length];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+			for (Worker worker : workers) {
+				latencies[i].merge(worker.latencies[i]);
+				rejections[i] += worker.rejections[i];
+				shed[i] += worker.shed[i];
+			}
+		}
+		System.out.print(table(latencies, rejections, shed, elapsedNanos));
+		Path output = Paths.get(config.get("output"));
+		if (output.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(output.toAbsolutePath().getParent());
+		}
+		Files.write(output, json(config, latencies, rejections, shed, elapsedNanos).getBytes(StandardCharsets.UTF_8));
+		System.out.println("Results written to " + output);
+	}
+
+	private static String table(LatencyHistogram[] latencies, long[] rejections, long[] shed, long elapsedNanos) {
+		StringBuilder table = new StringBuilder(String.format("%-24s %10s %12s %10s %10s %10s %10s %10s %10s%n",
+				"operation", "count", "ops/s", "p50 us", "p99 us", "p999 us", "max us", "rejected", "shed"));
+		for (Operation operation : Operation.values()) {
+			LatencyHistogram histogram = latencies[operation.ordinal()];
+			table.append(String.format("%-24s %10d %12.1f %10.1f %10.1f %10.1f %10.1f %9.2f%% %9.2f%%%n",
+					operation.label, histogram.getCount(), throughput(histogram, elapsedNanos),
+					micros(histogram.getPercentile(50)), micros(histogram.getPercentile(99)),
+					micros(histogram.getPercentile(99.9)), micros(histogram.getMax()),
+					100 * rejectionRate(histogram, rejections[operation.ordinal()]),
+					100 * rejectionRate(histogram, shed[operation.ordinal()])));
+		}
+		return table.toString();
+	}
+
+	private static String json(Config config, LatencyHistogram[] latencies, long[] rejections, long[] shed,
+			long elapsedNanos) {
+		StringBuilder json = new StringBuilder("{\n  \"config\": {");
+		String separator = "";
+		for (Map.Entry<String, String> option : config.options.entrySet()) {
+			json.append(separator).append("\n    \"").append(option.getKey()).append("\": \"")
+					.append(option.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+			separator = ",";
+		}
+		json.append("\n  },\n  \"results\": [");
+		separator = "";
+		for (Operation operation : Operation.values()) {
+			LatencyHistogram histogram = latencies[operation.ordinal()];
+			json.append(separator).append(String.format(Locale.ROOT,
+					"\n    {\"operation\": \"%s\", \"count\": %d, \"throughput\": %.1f, \"meanMicros\": %.1f, "
+							+ "\"p50Micros\": %.1f, \"p99Micros\": %.1f, \"p999Micros\": %.1f, \"maxMicros\": %.1f, "
+							+ "\"rejections\": %d, \"rejectionRate\": %.4f, \"shed\": %d}",
+					operation.label, histogram.getCount(), throughput(histogram, elapsedNanos),
+					histogram.getMean() / 1000, micros(histogram.getPercentile(50)),
+					micros(histogram.getPercentile(99)), micros(histogram.getPercentile(99.9)),
+					micros(histogram.getMax()), rejections[operation.ordinal()],
+					rejectionRate(histogram, rejections[operation.ordinal()]), shed[operation.ordinal()]));
+			separator = ",";
+		}
+		return json.append("\n  ]\n}\n").toString();
+	}
+
+	private static double throughput(LatencyHistogram histogram, long elapsedNanos) {
+		return histogram.getCount() * 1e9 / elapsedNanos;
+	}
+
+	private static double rejectionRate(LatencyHistogram histogram, long rejections) {
+		return histogram.getCount() == 0 ? 0 : (double) rejections / histogram.getCount();
+	}
+
+	private static double micros(long nanos) {
+		return nanos / 1000.0;
+	}
+
+}
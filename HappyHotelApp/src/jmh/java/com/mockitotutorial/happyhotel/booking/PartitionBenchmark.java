@@ -0,0 +1,108 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Booking throughput over the same 10,000 rooms split into 1 to 16
+ * properties. Each thread books (and releases) rooms in its own property,
+ * {@code threadIndex % partitions}, so throughput should grow with the number
+ * of partitions until every thread has one to itself. The unpinned search fans
+ * out over all partitions. Sweep threads through {@link BenchmarkRunner}:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.threads=1,2,4,8,16 -Djmh.args=PartitionBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionBenchmark {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+	private static final int ROOMS = 10_000;
+
+	@State(Scope.Benchmark)
+	public static class Inventory {
+
+		@Param({ "1", "2", "4", "8", "16" })
+		private int partitions;
+
+		private PartitionedRoomService roomService;
+		private ForkJoinPool pool;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			Map<String, List<Room>> roomsByProperty = new LinkedHashMap<>();
+			for (int i = 0; i < ROOMS; i++) {
+				roomsByProperty.computeIfAbsent("P" + i % partitions, property -> new ArrayList<>())
+						.add(new Room(String.valueOf(i), 1 + i % 5));
+			}
+			pool = new ForkJoinPool();
+			roomService = new PartitionedRoomService(roomsByProperty,
+					Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC), 365,
+					AllocationPolicy.BEST_FIT, pool);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			pool.shutdown();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Requests {
+
+		private final SplittableRandom random = new SplittableRandom();
+		private String propertyId;
+
+		@Setup(Level.Trial)
+		public void setup(Inventory inventory, ThreadParams threadParams) {
+			propertyId = "P" + threadParams.getThreadIndex() % inventory.partitions;
+		}
+
+		BookingRequest next(String propertyId) {
+			int from = random.nextInt(300);
+			BookingRequest bookingRequest = new BookingRequest("1", TODAY.plusDays(from),
+					TODAY.plusDays(from + 1 + random.nextInt(7)), 1 + random.nextInt(5), false);
+			bookingRequest.setPropertyId(propertyId);
+			return bookingRequest;
+		}
+	}
+
+	@Benchmark
+	public String pinnedBooking(Inventory inventory, Requests requests) {
+		BookingRequest bookingRequest = requests.next(requests.propertyId);
+		String roomId;
+		try {
+			roomId = inventory.roomService.claimAvailableRoom(bookingRequest);
+		} catch (BusinessException e) {
+			return null;
+		}
+		inventory.roomService.unbookRoom(roomId, bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+		return roomId;
+	}
+
+	@Benchmark
+	public String unpinnedSearch(Inventory inventory, Requests requests) {
+		try {
+			return inventory.roomService.findAvailableRoomId(requests.next(null));
+		} catch (BusinessException e) {
+			return null;
+		}
+	}
+
+}
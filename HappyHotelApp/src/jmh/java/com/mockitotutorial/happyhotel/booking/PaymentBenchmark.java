@@ -0,0 +1,97 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Payment recording with the original UUID + HashMap&lt;String, Double&gt; store
+ * against the primitive ledger, directly and through micro-batches. Run with
+ * the GC profiler to compare allocation rates:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="PaymentBenchmark -prof gc"
+ * </pre>
+ *
+ * Stores are recreated every million payments so their growth does not
+ * dominate the measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PaymentBenchmark {
+
+	private static final int RESET_EVERY = 1_000_000;
+
+	private static class UuidPaymentService {
+
+		private final Map<String, Double> payments = new HashMap<>();
+
+		String pay(BookingRequest bookingRequest, double price) {
+			if (price > 200.0 && bookingRequest.getGuestCount() < 3) {
+				throw new UnsupportedOperationException("Only small payments are supported.");
+			}
+			String id = UUID.randomUUID().toString();
+			payments.put(id, price);
+			return id;
+		}
+	}
+
+	private final BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+			LocalDate.of(2020, 01, 05), 2, true);
+
+	private UuidPaymentService uuidPaymentService;
+	private PaymentService paymentService;
+	private PaymentBatcher paymentBatcher;
+	private int payments;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		uuidPaymentService = new UuidPaymentService();
+		paymentService = new PaymentService();
+		paymentBatcher = new PaymentBatcher(new PaymentService());
+		payments = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		paymentBatcher.close();
+	}
+
+	@Benchmark
+	public String uuidHashMap() {
+		if (++payments == RESET_EVERY) {
+			uuidPaymentService = new UuidPaymentService();
+			payments = 0;
+		}
+		return uuidPaymentService.pay(bookingRequest, 100.0);
+	}
+
+	@Benchmark
+	public String ledger() {
+		if (++payments == RESET_EVERY) {
+			paymentService = new PaymentService();
+			payments = 0;
+		}
+		return paymentService.pay(bookingRequest, 100.0);
+	}
+
+	@Benchmark
+	public CompletableFuture<String> microBatched() {
+		if (++payments == RESET_EVERY) {
+			paymentBatcher.close();
+			paymentBatcher = new PaymentBatcher(new PaymentService());
+			payments = 0;
+		}
+		return paymentBatcher.pay(bookingRequest, 100.0);
+	}
+
+}
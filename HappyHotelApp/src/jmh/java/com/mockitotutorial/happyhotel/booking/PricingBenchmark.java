@@ -0,0 +1,75 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A 1,000-quote date grid priced three ways: the original flat date arithmetic
+ * (no seasons, as a floor), walking the rate plan night by night, and the
+ * batch quote over precomputed rate tables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PricingBenchmark {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+
+	private final List<BookingRequest> bookingRequests = new ArrayList<>();
+	private RatePlan ratePlan;
+	private PricingEngine pricingEngine;
+
+	@Setup
+	public void setup() {
+		ratePlan = new RatePlan(50.0);
+		ratePlan.addSeason(TODAY.plusDays(180), TODAY.plusDays(240), 150);
+		ratePlan.setWeekendPercent(120);
+		ratePlan.setGuestTierPercent(3, 90);
+		pricingEngine = new PricingEngine(ratePlan, TODAY, 2 * 366);
+		for (int i = 0; i < 1000; i++) {
+			bookingRequests.add(new BookingRequest("1", TODAY.plusDays(i % 365), TODAY.plusDays(i % 365 + 1 + i % 14),
+					1 + i % 5, false));
+		}
+	}
+
+	@Benchmark
+	public double[] dateArithmetic() {
+		double[] prices = new double[bookingRequests.size()];
+		for (int i = 0; i < prices.length; i++) {
+			BookingRequest bookingRequest = bookingRequests.get(i);
+			long nights = ChronoUnit.DAYS.between(bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+			prices[i] = 50.0 * bookingRequest.getGuestCount() * nights;
+		}
+		return prices;
+	}
+
+	@Benchmark
+	public double[] ratePlanPerNight() {
+		double[] prices = new double[bookingRequests.size()];
+		for (int i = 0; i < prices.length; i++) {
+			BookingRequest bookingRequest = bookingRequests.get(i);
+			double price = 0;
+			for (LocalDate night = bookingRequest.getDateFrom(); night.isBefore(bookingRequest.getDateTo());
+					night = night.plusDays(1)) {
+				price += ratePlan.getNightlyRate(night);
+			}
+			prices[i] = price * bookingRequest.getGuestCount()
+					* ratePlan.getGuestTierPercent(bookingRequest.getGuestCount()) / 100;
+		}
+		return prices;
+	}
+
+	@Benchmark
+	public double[] rateTables() {
+		return pricingEngine.quote(bookingRequests, "USD");
+	}
+
+}
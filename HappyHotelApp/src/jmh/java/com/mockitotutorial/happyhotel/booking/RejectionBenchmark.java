@@ -0,0 +1,113 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Booking attempts at a 90% rejection rate through the exception-throwing
+ * methods against their result-returning try variants. Nine requests in ten
+ * ask for the first 30 nights, which are sold out; the tenth finds a room and
+ * releases it again so the inventory stays the same. Run with the GC profiler
+ * to compare allocation rates:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="RejectionBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RejectionBenchmark {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+	private static final int ROOM_COUNT = 1000;
+	private static final int SOLD_OUT_NIGHTS = 30;
+
+	private final BookingRequest[] bookingRequests = new BookingRequest[10];
+	private RoomService roomService;
+	private BookingService bookingService;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		List<Room> rooms = new ArrayList<>(ROOM_COUNT);
+		for (int i = 0; i < ROOM_COUNT; i++) {
+			rooms.add(new Room(String.valueOf(i), 2));
+		}
+		roomService = new RoomService(rooms,
+				Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC), 365);
+		for (int i = 0; i < ROOM_COUNT; i++) {
+			roomService.bookRoom(String.valueOf(i), TODAY, TODAY.plusDays(SOLD_OUT_NIGHTS));
+		}
+		MailSender mailSender = new MailSender() {
+			@Override
+			public void sendBookingConfirmation(String bookingId) {
+			}
+		};
+		bookingService = new BookingService(new PaymentService(), roomService, new BookingDAO(), mailSender);
+		for (int i = 0; i < bookingRequests.length; i++) {
+			LocalDate from = i == 0 ? TODAY.plusDays(100) : TODAY.plusDays(i);
+			bookingRequests[i] = new BookingRequest("1", from, from.plusDays(3), 2, false);
+		}
+	}
+
+	private BookingRequest nextRequest() {
+		BookingRequest bookingRequest = bookingRequests[next];
+		next = next == bookingRequests.length - 1 ? 0 : next + 1;
+		return bookingRequest;
+	}
+
+	@Benchmark
+	public String claimThrowing() {
+		BookingRequest bookingRequest = nextRequest();
+		String roomId;
+		try {
+			roomId = roomService.claimAvailableRoom(bookingRequest);
+		} catch (BusinessException e) {
+			return null;
+		}
+		roomService.unbookRoom(roomId, bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+		return roomId;
+	}
+
+	@Benchmark
+	public String claimTry() {
+		BookingRequest bookingRequest = nextRequest();
+		String roomId = roomService.tryClaimAvailableRoom(bookingRequest);
+		if (roomId != null) {
+			roomService.unbookRoom(roomId, bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+		}
+		return roomId;
+	}
+
+	@Benchmark
+	public String makeBookingThrowing() {
+		String bookingId;
+		try {
+			bookingId = bookingService.makeBooking(nextRequest());
+		} catch (BusinessException e) {
+			return null;
+		}
+		bookingService.cancelBooking(bookingId);
+		return bookingId;
+	}
+
+	@Benchmark
+	public String tryMakeBooking() {
+		String bookingId = bookingService.tryMakeBooking(nextRequest());
+		if (bookingId != null) {
+			bookingService.cancelBooking(bookingId);
+		}
+		return bookingId;
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restart time of a journaled {@link RoomService}: writes a history of room
+ * events (default 100,000,000 over 1,000,000 rooms; stays are booked and later
+ * unbooked, so occupancy levels off around a fifth of the calendar), closes the
+ * journal and times building a new RoomService from its snapshot and tail.
+ * The history goes through the journal in group commit from several threads,
+ * compacted every given number of events:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.jvm=-Xmx4g -Djmh.main=com.mockitotutorial.happyhotel.booking.RoomRecoveryTime -Djmh.args="1000000 100000000"
+ * </pre>
+ *
+ * Arguments: rooms, events, writer threads (8), events between snapshots
+ * (10,000,000) and the journal directory (a new temporary directory).
+ */
+public class RoomRecoveryTime {
+
+	private static final LocalDate FIRST_NIGHT = LocalDate.of(2020, 01, 01);
+	private static final Clock CLOCK = Clock.fixed(FIRST_NIGHT.atStartOfDay().toInstant(ZoneOffset.UTC),
+			ZoneOffset.UTC);
+	private static final int NIGHTS = 2 * 366;
+	private static final int REGION_BYTES = 8 * 1024 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		long events = args.length > 1 ? Long.parseLong(args[1]) : 100_000_000L;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+		int compactionInterval = args.length > 3 ? Integer.parseInt(args[3]) : 10_000_000;
+		Path directory = args.length > 4 ? Paths.get(args[4]) : Files.createTempDirectory("room-recovery");
+		Path file = directory.resolve("rooms.journal");
+		List<Room> rooms = new ArrayList<>(roomCount);
+		for (int i = 0; i < roomCount; i++) {
+			rooms.add(new Room(String.valueOf(i), 1 + i % 5));
+		}
+
+		long start = System.nanoTime();
+		try (Journal journal = new Journal(file, Journal.Durability.GROUP_COMMIT, REGION_BYTES, compactionInterval)) {
+			RoomService roomService = new RoomService(rooms, CLOCK, NIGHTS, journal);
+			List<Thread> writers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int writer = t;
+				Thread thread = new Thread(() -> write(roomService, roomCount, writer, threads, events / threads));
+				writers.add(thread);
+				thread.start();
+			}
+			for (Thread writer : writers) {
+				writer.join();
+			}
+		}
+		long writeNanos = System.nanoTime() - start;
+		System.out.printf("history  %,15d events %,10d ms %,12.0f events/s%n", events,
+				TimeUnit.NANOSECONDS.toMillis(writeNanos), events * 1e9 / writeNanos);
+		System.out.printf("journal  %,15d MB snapshot %,d MB tail%n", size(directory.resolve("rooms.journal.snapshot")),
+				size(file));
+
+		for (int run = 0; run < 3; run++) {
+			start = System.nanoTime();
+			try (Journal journal = new Journal(file, Journal.Durability.GROUP_COMMIT, REGION_BYTES,
+					compactionInterval)) {
+				RoomService restored = new RoomService(rooms, CLOCK, NIGHTS, journal);
+				long restoreNanos = System.nanoTime() - start;
+				System.out.printf("restore  %,15d rooms %,10d ms %,12d places free tonight%n", restored.getRoomCount(),
+						TimeUnit.NANOSECONDS.toMillis(restoreNanos), restored.getAvailablePlaceCount());
+			}
+		}
+	}
+
+	private static void write(RoomService roomService, int roomCount, int writer, int writers, long events) {
+		SplittableRandom random = new SplittableRandom(writer);
+		int[] bookedRooms = new int[Math.max(1, roomCount * 40 / writers)];
+		int[] bookedFrom = new int[bookedRooms.length];
+		int[] bookedNights = new int[bookedRooms.length];
+		int head = 0;
+		int size = 0;
+		for (long event = 0; event < events;) {
+			if (size == bookedRooms.length) {
+				roomService.unbookRoom(String.valueOf(bookedRooms[head]), FIRST_NIGHT.plusDays(bookedFrom[head]),
+						FIRST_NIGHT.plusDays(bookedFrom[head] + bookedNights[head]));
+				head = (head + 1) % bookedRooms.length;
+				size--;
+				event++;
+			}
+			int room = writer + writers * random.nextInt((roomCount - writer + writers - 1) / writers);
+			int nights = 1 + random.nextInt(7);
+			int from = random.nextInt(NIGHTS - nights);
+			if (roomService.tryBookRoom(String.valueOf(room), FIRST_NIGHT.plusDays(from),
+					FIRST_NIGHT.plusDays(from + nights))) {
+				int tail = (head + size++) % bookedRooms.length;
+				bookedRooms[tail] = room;
+				bookedFrom[tail] = from;
+				bookedNights[tail] = nights;
+				event++;
+			}
+		}
+	}
+
+	private static long size(Path file) throws IOException {
+		return Files.exists(file) ? Files.size(file) >> 20 : 0;
+	}
+
+}
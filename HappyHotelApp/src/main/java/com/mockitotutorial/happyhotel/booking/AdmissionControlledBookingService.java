@@ -0,0 +1,94 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Booking service that sheds load instead of letting requests pile up behind
+ * a slow payment provider. Bookings pass through a {@link ConcurrencyLimiter}
+ * that adapts to their latency; cancellations have a separate, fixed budget so
+ * they keep freeing rooms while bookings are being shed. A request over its
+ * limit fails at once with {@link OverloadedException}. Availability queries
+ * are not limited.
+ */
+public class AdmissionControlledBookingService extends BookingService {
+
+	private static final int DEFAULT_INITIAL_LIMIT = 20;
+	private static final int DEFAULT_MAX_LIMIT = 1_000;
+	private static final int DEFAULT_CANCEL_LIMIT = 32;
+
+	private final ConcurrencyLimiter bookingLimiter;
+	private final ConcurrencyLimiter cancelLimiter;
+
+	public AdmissionControlledBookingService(PaymentService paymentService, RoomEngine roomService,
+			BookingDAO bookingDAO, MailSender mailSender, long latencyTarget, TimeUnit unit) {
+		this(paymentService, roomService, bookingDAO, mailSender, new PricingEngine(), EngineMode.CONCURRENT,
+				new ConcurrencyLimiter(DEFAULT_INITIAL_LIMIT, 1, DEFAULT_MAX_LIMIT, latencyTarget, unit),
+				new ConcurrencyLimiter(DEFAULT_CANCEL_LIMIT));
+	}
+
+	public AdmissionControlledBookingService(PaymentService paymentService, RoomEngine roomService,
+			BookingDAO bookingDAO, MailSender mailSender, PricingEngine pricingEngine, EngineMode engineMode,
+			ConcurrencyLimiter bookingLimiter, ConcurrencyLimiter cancelLimiter) {
+		super(paymentService, roomService, bookingDAO, mailSender, pricingEngine, engineMode);
+		this.bookingLimiter = bookingLimiter;
+		this.cancelLimiter = cancelLimiter;
+	}
+
+	@Override
+	public String makeBooking(BookingRequest bookingRequest) {
+		return admit(bookingLimiter, () -> super.makeBooking(bookingRequest));
+	}
+
+	@Override
+	public String tryMakeBooking(BookingRequest bookingRequest) {
+		return admit(bookingLimiter, () -> super.tryMakeBooking(bookingRequest));
+	}
+
+	@Override
+	public List<BookingResult> makeBookings(List<BookingRequest> bookingRequests) {
+		return admit(bookingLimiter, () -> super.makeBookings(bookingRequests));
+	}
+
+	@Override
+	public CompletableFuture<String> makeBookingAsync(BookingRequest bookingRequest) {
+		if (!bookingLimiter.tryAcquire()) {
+			CompletableFuture<String> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(OverloadedException.INSTANCE);
+			return rejected;
+		}
+		long start = System.nanoTime();
+		return super.makeBookingAsync(bookingRequest).whenComplete((bookingId, error) -> bookingLimiter.release(start));
+	}
+
+	@Override
+	public void cancelBooking(String id) {
+		admit(cancelLimiter, () -> {
+			super.cancelBooking(id);
+			return null;
+		});
+	}
+
+	public ConcurrencyLimiter getBookingLimiter() {
+		return bookingLimiter;
+	}
+
+	public ConcurrencyLimiter getCancelLimiter() {
+		return cancelLimiter;
+	}
+
+	private static <T> T admit(ConcurrencyLimiter limiter, Supplier<T> request) {
+		if (!limiter.tryAcquire()) {
+			throw OverloadedException.INSTANCE;
+		}
+		long start = System.nanoTime();
+		try {
+			return request.get();
+		} finally {
+			limiter.release(start);
+		}
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * How {@link RoomService} picks a room for a party.
+ */
+public enum AllocationPolicy {
+
+	/** Only rooms whose capacity equals the guest count. */
+	EXACT_MATCH,
+
+	/** The smallest free room that holds the whole party. */
+	BEST_FIT
+
+}
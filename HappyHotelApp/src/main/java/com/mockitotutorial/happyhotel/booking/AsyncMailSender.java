@@ -0,0 +1,198 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Takes booking confirmations off the caller's thread. Confirmations wait in a
+ * bounded queue and worker threads hand them to the transport in batches, one
+ * batch per flush interval. A full queue blocks the caller for at most one
+ * flush interval and then rejects the confirmation.
+ */
+public class AsyncMailSender extends MailSender implements Closeable {
+
+	private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+	private static final int DEFAULT_WORKERS = 2;
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 50;
+	private static final int MAX_BATCH_SIZE = 500;
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final MailSender transport;
+	private final BlockingQueue<String> queue;
+	private final long flushIntervalNanos;
+	private final List<Thread> workers = new ArrayList<>();
+	private volatile boolean running = true;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder attempts = new LongAdder();
+	private final LongAdder sendNanos = new LongAdder();
+	private final AtomicLong maxSendNanos = new AtomicLong();
+
+	public AsyncMailSender(MailSender transport) {
+		this(transport, DEFAULT_QUEUE_CAPACITY, DEFAULT_WORKERS, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	public AsyncMailSender(MailSender transport, int queueCapacity, int workerCount, long flushInterval,
+			TimeUnit unit) {
+		this.transport = transport;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.flushIntervalNanos = unit.toNanos(flushInterval);
+		ThreadFactory threadFactory = workerThreadFactory();
+		for (int i = 0; i < workerCount; i++) {
+			Thread worker = threadFactory.newThread(this::drain);
+			worker.setName("mail-sender-" + i);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	@Override
+	public void sendBookingConfirmation(String bookingId) {
+		if (!running) {
+			throw new IllegalStateException("Mail sender is closed");
+		}
+		try {
+			if (!queue.offer(bookingId, flushIntervalNanos, TimeUnit.NANOSECONDS)) {
+				throw new IllegalStateException("Mail queue is full");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void sendBookingConfirmations(List<String> bookingIds) {
+		for (String bookingId : bookingIds) {
+			sendBookingConfirmation(bookingId);
+		}
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getSentCount() {
+		return sent.sum();
+	}
+
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	public long getRetryCount() {
+		return retried.sum();
+	}
+
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	public long getAverageSendLatency(TimeUnit unit) {
+		long count = attempts.sum();
+		return count == 0 ? 0 : unit.convert(sendNanos.sum() / count, TimeUnit.NANOSECONDS);
+	}
+
+	public long getMaxSendLatency(TimeUnit unit) {
+		return unit.convert(maxSendNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void drain() {
+		List<String> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		while (running || !queue.isEmpty()) {
+			try {
+				String first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + flushIntervalNanos;
+				long remaining;
+				while (batch.size() < MAX_BATCH_SIZE && (remaining = deadline - System.nanoTime()) > 0) {
+					String next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+					queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+				}
+			} catch (InterruptedException e) {
+				queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+			}
+			if (!batch.isEmpty()) {
+				send(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void send(List<String> batch) {
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			long start = System.nanoTime();
+			try {
+				transport.sendBookingConfirmations(batch);
+				record(System.nanoTime() - start);
+				batches.increment();
+				sent.add(batch.size());
+				return;
+			} catch (RuntimeException e) {
+				record(System.nanoTime() - start);
+				if (attempt < MAX_ATTEMPTS) {
+					retried.increment();
+					try {
+						Thread.sleep(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) << (attempt - 1));
+					} catch (InterruptedException interrupted) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
+		failed.add(batch.size());
+	}
+
+	private void record(long nanos) {
+		attempts.increment();
+		sendNanos.add(nanos);
+		maxSendNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	private static ThreadFactory workerThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return runnable -> {
+				Thread thread = new Thread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			};
+		}
+	}
+
+}
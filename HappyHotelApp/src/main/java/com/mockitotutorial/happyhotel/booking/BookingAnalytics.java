@@ -0,0 +1,144 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes an {@link OccupancyReport} from a copy of the stored stays on a
+ * fork/join pool. Each task tallies a slice of the stays into difference
+ * arrays over the window (rooms taken, and guests weighted by their tier
+ * percentage), so a booking costs two array writes however long it is; the
+ * slices are summed pairwise and a running sum turns the differences into
+ * nights. Revenue for a night is its rate times the weighted guests, which
+ * matches {@link PricingEngine#price} up to rounding per booking.
+ */
+public class BookingAnalytics {
+
+	private static final int STAYS_PER_TASK = 1 << 16;
+
+	private final BookingDAO bookingDAO;
+	private final RoomEngine roomService;
+	private final PricingEngine pricingEngine;
+	private final ForkJoinPool pool;
+
+	private static class Tally {
+
+		private final int[] occupiedDelta;
+		private final long[] guestPercentDelta;
+		private final int[] stayLengths = new int[OccupancyReport.MAX_STAY_LENGTH + 1];
+		private long bookingCount;
+		private long stayNights;
+
+		Tally(int nights) {
+			this.occupiedDelta = new int[nights + 1];
+			this.guestPercentDelta = new long[nights + 1];
+		}
+
+		Tally merge(Tally other) {
+			for (int night = 0; night < occupiedDelta.length; night++) {
+				occupiedDelta[night] += other.occupiedDelta[night];
+				guestPercentDelta[night] += other.guestPercentDelta[night];
+			}
+			for (int length = 0; length < stayLengths.length; length++) {
+				stayLengths[length] += other.stayLengths[length];
+			}
+			bookingCount += other.bookingCount;
+			stayNights += other.stayNights;
+			return this;
+		}
+	}
+
+	private static class TallyTask extends RecursiveTask<Tally> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Stays stays;
+		private final PricingEngine.RateTable rates;
+		private final int firstNight;
+		private final int nights;
+		private final int from;
+		private final int to;
+
+		TallyTask(Stays stays, PricingEngine.RateTable rates, int firstNight, int nights, int from, int to) {
+			this.stays = stays;
+			this.rates = rates;
+			this.firstNight = firstNight;
+			this.nights = nights;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Tally compute() {
+			if (to - from <= STAYS_PER_TASK) {
+				return tally();
+			}
+			int middle = (from + to) >>> 1;
+			TallyTask right = new TallyTask(stays, rates, firstNight, nights, middle, to);
+			right.fork();
+			Tally left = new TallyTask(stays, rates, firstNight, nights, from, middle).compute();
+			return left.merge(right.join());
+		}
+
+		private Tally tally() {
+			Tally tally = new Tally(nights);
+			for (int stay = from; stay < to; stay++) {
+				int dateFrom = stays.getDateFrom(stay);
+				int dateTo = stays.getDateTo(stay);
+				int start = Math.max(dateFrom - firstNight, 0);
+				int end = Math.min(dateTo - firstNight, nights);
+				if (start >= end) {
+					continue;
+				}
+				int guestCount = stays.getGuestCount(stay);
+				long guestPercent = (long) guestCount * rates.tierPercent(guestCount);
+				tally.occupiedDelta[start]++;
+				tally.occupiedDelta[end]--;
+				tally.guestPercentDelta[start] += guestPercent;
+				tally.guestPercentDelta[end] -= guestPercent;
+				tally.stayLengths[Math.min(dateTo - dateFrom, OccupancyReport.MAX_STAY_LENGTH)]++;
+				tally.bookingCount++;
+				tally.stayNights += dateTo - dateFrom;
+			}
+			return tally;
+		}
+	}
+
+	public BookingAnalytics(BookingDAO bookingDAO, RoomEngine roomService, PricingEngine pricingEngine) {
+		this(bookingDAO, roomService, pricingEngine, ForkJoinPool.commonPool());
+	}
+
+	public BookingAnalytics(BookingDAO bookingDAO, RoomEngine roomService, PricingEngine pricingEngine,
+			ForkJoinPool pool) {
+		this.bookingDAO = bookingDAO;
+		this.roomService = roomService;
+		this.pricingEngine = pricingEngine;
+		this.pool = pool;
+	}
+
+	public OccupancyReport analyze(LocalDate firstNight, LocalDate lastNightExclusive) {
+		int first = Math.toIntExact(firstNight.toEpochDay());
+		int nights = Math.toIntExact(lastNightExclusive.toEpochDay() - first);
+		if (nights <= 0) {
+			throw new IllegalArgumentException("Empty window: " + firstNight + " to " + lastNightExclusive);
+		}
+		Stays stays = bookingDAO.stays();
+		PricingEngine.RateTable rates = pricingEngine.getRateTable();
+		Tally tally = pool.invoke(new TallyTask(stays, rates, first, nights, 0, stays.size()));
+
+		int[] occupiedRooms = new int[nights];
+		long[] revenueCents = new long[nights];
+		int occupied = 0;
+		long guestPercent = 0;
+		for (int night = 0; night < nights; night++) {
+			occupied += tally.occupiedDelta[night];
+			guestPercent += tally.guestPercentDelta[night];
+			occupiedRooms[night] = occupied;
+			revenueCents[night] = Math.floorDiv(rates.nightlyCents(first + night) * guestPercent + 50, 100);
+		}
+		return new OccupancyReport(firstNight, roomService.getRoomCount(), occupiedRooms, revenueCents,
+				tally.bookingCount, tally.stayNights, tally.stayLengths);
+	}
+
+}
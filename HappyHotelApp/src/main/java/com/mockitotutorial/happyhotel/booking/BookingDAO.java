@@ -1,23 +1,210 @@
 package com.mockitotutorial.happyhotel.booking;
 
+import java.io.*;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.StreamSupport;
 
 public class BookingDAO {
 
-	private final Map<String, BookingRequest> bookings = new HashMap<>();
+	private static final byte SAVE = 1;
+	private static final byte DELETE = 2;
+
+	private final BookingStore store;
+	private final Journal journal;
+	private final IdGenerator idGenerator;
+
+	public BookingDAO() {
+		this(TimeOrderedIdGenerator.INSTANCE);
+	}
+
+	public BookingDAO(IdGenerator idGenerator) {
+		this(idGenerator, StorageMode.HEAP);
+	}
+
+	public BookingDAO(StorageMode storageMode) {
+		this(TimeOrderedIdGenerator.INSTANCE, storageMode);
+	}
+
+	public BookingDAO(IdGenerator idGenerator, StorageMode storageMode) {
+		this.store = createStore(storageMode);
+		this.journal = null;
+		this.idGenerator = idGenerator;
+	}
+
+	public BookingDAO(Journal journal) {
+		this(journal, TimeOrderedIdGenerator.INSTANCE);
+	}
+
+	public BookingDAO(Journal journal, IdGenerator idGenerator) {
+		this(journal, idGenerator, StorageMode.HEAP);
+	}
+
+	public BookingDAO(Journal journal, IdGenerator idGenerator, StorageMode storageMode) {
+		this.store = createStore(storageMode);
+		this.journal = journal;
+		this.idGenerator = idGenerator;
+		journal.replay(this::replay);
+	}
 
 	public String save(BookingRequest bookingRequest) {
-		String id = UUID.randomUUID().toString();
-		bookings.put(id, bookingRequest);
+		String id = idGenerator.nextIdString();
+		if (journal == null) {
+			put(id, bookingRequest);
+		} else {
+			journal.append(encodeSave(id, bookingRequest), () -> put(id, bookingRequest));
+			journal.compactIfDue(this::snapshot);
+		}
 		return id;
 	}
-	
+
+	public List<String> saveAll(List<BookingRequest> bookingRequests) {
+		List<String> ids = new ArrayList<>(bookingRequests.size());
+		for (int i = 0; i < bookingRequests.size(); i++) {
+			ids.add(idGenerator.nextIdString());
+		}
+		Runnable apply = () -> {
+			for (int i = 0; i < ids.size(); i++) {
+				put(ids.get(i), bookingRequests.get(i));
+			}
+		};
+		if (journal == null) {
+			apply.run();
+		} else {
+			List<byte[]> records = new ArrayList<>(ids.size());
+			for (int i = 0; i < ids.size(); i++) {
+				records.add(encodeSave(ids.get(i), bookingRequests.get(i)));
+			}
+			journal.appendAll(records, apply);
+			journal.compactIfDue(this::snapshot);
+		}
+		return ids;
+	}
+
 	public BookingRequest get(String id) {
-		return bookings.get(id);
+		return store.get(id);
 	}
-	
+
 	public void delete(String bookingId) {
-		bookings.remove(bookingId);
+		if (journal == null) {
+			remove(bookingId);
+		} else {
+			journal.append(encodeDelete(bookingId), () -> remove(bookingId));
+			journal.compactIfDue(this::snapshot);
+		}
+	}
+
+	public Map<String, BookingRequest> findByUserId(String userId) {
+		return store.findByUserId(userId);
+	}
+
+	public Map<String, BookingRequest> findByRoomId(String roomId) {
+		return store.findByRoomId(roomId);
+	}
+
+	public Map<String, BookingRequest> findByDateFrom(LocalDate from, LocalDate to) {
+		return store.findByDateFrom(from, to);
+	}
+
+	public int size() {
+		return store.size();
+	}
+
+	Stays stays() {
+		return store.stays();
+	}
+
+	private void put(String id, BookingRequest bookingRequest) {
+		store.put(id, bookingRequest);
+	}
+
+	private void remove(String id) {
+		store.remove(id);
+	}
+
+	private Iterable<byte[]> snapshot() {
+		return () -> StreamSupport.stream(store.spliterator(), false)
+				.map(entry -> encodeSave(entry.getKey(), entry.getValue()))
+				.iterator();
+	}
+
+	private static BookingStore createStore(StorageMode storageMode) {
+		return storageMode == StorageMode.COLUMNAR ? new ColumnarBookingStore() : new HeapBookingStore();
+	}
+
+	private void replay(byte[] record) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+			byte type = in.readByte();
+			String id = in.readUTF();
+			if (type == SAVE) {
+				String userId = readString(in);
+				LocalDate dateFrom = readDate(in);
+				LocalDate dateTo = readDate(in);
+				BookingRequest bookingRequest = new BookingRequest(userId, dateFrom, dateTo, in.readInt(),
+						in.readBoolean());
+				bookingRequest.setRoomId(readString(in));
+				if (in.available() > 0) {
+					bookingRequest.setPropertyId(readString(in));
+				}
+				remove(id);
+				put(id, bookingRequest);
+			} else if (type == DELETE) {
+				remove(id);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static byte[] encodeSave(String id, BookingRequest bookingRequest) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(SAVE);
+			out.writeUTF(id);
+			writeString(out, bookingRequest.getUserId());
+			writeDate(out, bookingRequest.getDateFrom());
+			writeDate(out, bookingRequest.getDateTo());
+			out.writeInt(bookingRequest.getGuestCount());
+			out.writeBoolean(bookingRequest.isPrepaid());
+			writeString(out, bookingRequest.getRoomId());
+			writeString(out, bookingRequest.getPropertyId());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] encodeDelete(String id) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(40);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(DELETE);
+			out.writeUTF(id);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeDate(DataOutput out, LocalDate value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeLong(value.toEpochDay());
+		}
+	}
+
+	private static LocalDate readDate(DataInput in) throws IOException {
+		return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
 	}
 
 }
@@ -10,6 +10,7 @@ public class BookingRequest {
 	private final int guestCount;
 	private final boolean prepaid;
 	private String roomId;
+	private String propertyId;
 	
 	public BookingRequest(String userId, LocalDate dateFrom, LocalDate dateTo, int guestCount, boolean prepaid) {
 		super();
@@ -48,6 +49,14 @@ public class BookingRequest {
 		this.roomId = roomId;
 	}
 
+	public String getPropertyId() {
+		return propertyId;
+	}
+
+	public void setPropertyId(String propertyId) {
+		this.propertyId = propertyId;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -57,6 +66,7 @@ public class BookingRequest {
 		result = prime * result + ((dateTo == null) ? 0 : dateTo.hashCode());
 		result = prime * result + guestCount;
 		result = prime * result + (prepaid ? 1231 : 1237);
+		result = prime * result + ((propertyId == null) ? 0 : propertyId.hashCode());
 		result = prime * result + ((roomId == null) ? 0 : roomId.hashCode());
 		result = prime * result + ((userId == null) ? 0 : userId.hashCode());
 		return result;
@@ -85,6 +95,11 @@ public class BookingRequest {
 			return false;
 		if (prepaid != other.prepaid)
 			return false;
+		if (propertyId == null) {
+			if (other.propertyId != null)
+				return false;
+		} else if (!propertyId.equals(other.propertyId))
+			return false;
 		if (roomId == null) {
 			if (other.roomId != null)
 				return false;
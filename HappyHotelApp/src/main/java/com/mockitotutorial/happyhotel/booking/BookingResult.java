@@ -0,0 +1,35 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * Outcome of one request in a batch. A result can carry both a booking id and
+ * an error when the booking was saved but its confirmation could not be sent.
+ */
+public class BookingResult {
+
+	private final BookingRequest bookingRequest;
+	private final String bookingId;
+	private final RuntimeException error;
+
+	public BookingResult(BookingRequest bookingRequest, String bookingId, RuntimeException error) {
+		this.bookingRequest = bookingRequest;
+		this.bookingId = bookingId;
+		this.error = error;
+	}
+
+	public BookingRequest getBookingRequest() {
+		return bookingRequest;
+	}
+
+	public String getBookingId() {
+		return bookingId;
+	}
+
+	public RuntimeException getError() {
+		return error;
+	}
+
+	public boolean isBooked() {
+		return bookingId != null;
+	}
+
+}
@@ -1,61 +1,241 @@
 package com.mockitotutorial.happyhotel.booking;
 
-import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BookingService {
 
+	private static final int PAYMENT_THREADS = 64;
+	private static final ExecutorService SHARED_PAYMENT_EXECUTOR = newPaymentExecutor();
+
 	private final PaymentService paymentService;
-	private final RoomService roomService;
+	private final RoomEngine roomService;
 	private final BookingDAO bookingDAO;
 	private final MailSender mailSender;
-
-	private final static double BASE_PRICE_USD = 50.0;
+	private final PricingEngine pricingEngine;
+	private final ExecutorService paymentExecutor;
+	private final boolean ownsRoomService;
 
 	public int getAvailablePlaceCount() {
-		return roomService.getAvailableRooms()
-				.stream()
-				.map(room -> room.getCapacity())
-				.reduce(0, Integer::sum);
+		return roomService.getAvailablePlaceCount();
 	}
 	
 	public double calculatePrice(BookingRequest bookingRequest) {
-		long nights = ChronoUnit.DAYS.between(bookingRequest.getDateFrom(), bookingRequest.getDateTo());
-		return BASE_PRICE_USD * bookingRequest.getGuestCount() * nights;
+		return pricingEngine.price(bookingRequest);
 	}
 	
 	public double calculatePriceEuro(BookingRequest bookingRequest) {
-		long nights = ChronoUnit.DAYS.between(bookingRequest.getDateFrom(), bookingRequest.getDateTo());
-		return CurrencyConverter.toEuro(BASE_PRICE_USD * bookingRequest.getGuestCount() * nights);
+		return CurrencyConverter.toEuro(pricingEngine.price(bookingRequest));
+	}
+
+	public double[] quote(List<BookingRequest> bookingRequests, String currency) {
+		return pricingEngine.quote(bookingRequests, currency);
 	}
 
 	public String makeBooking(BookingRequest bookingRequest) {
-		String roomId = roomService.findAvailableRoomId(bookingRequest);
+		String roomId = roomService.tryClaimAvailableRoom(bookingRequest);
+		if (roomId == null) {
+			throw BusinessException.NO_ROOM;
+		}
+		return book(bookingRequest, roomId);
+	}
+
+	public String tryMakeBooking(BookingRequest bookingRequest) {
+		String roomId = roomService.tryClaimAvailableRoom(bookingRequest);
+		return roomId == null ? null : book(bookingRequest, roomId);
+	}
+
+	public CompletableFuture<String> makeBookingAsync(BookingRequest bookingRequest) {
+		CompletableFuture<Double> price = CompletableFuture.supplyAsync(() -> calculatePrice(bookingRequest),
+				paymentExecutor);
+		CompletableFuture<String> roomId = roomService instanceof SingleWriterRoomService
+				? ((SingleWriterRoomService) roomService).claimAvailableRoomAsync(bookingRequest)
+				: CompletableFuture.completedFuture(bookingRequest).thenApply(roomService::claimAvailableRoom);
+		CompletableFuture<String> paymentId = roomId.thenCombine(price, (room, amount) -> amount)
+				.thenCompose(amount -> bookingRequest.isPrepaid()
+						? CompletableFuture.supplyAsync(() -> paymentService.pay(bookingRequest, amount), paymentExecutor)
+						: CompletableFuture.completedFuture(null));
+		return paymentId.thenApply(payment -> save(bookingRequest, roomId.join())).whenComplete((bookingId, error) -> {
+			if (error != null) {
+				compensate(bookingRequest, roomId, paymentId);
+			}
+		});
+	}
+
+	private String save(BookingRequest bookingRequest, String roomId) {
+		bookingRequest.setRoomId(roomId);
+		String bookingId = bookingDAO.save(bookingRequest);
+		try {
+			mailSender.sendBookingConfirmation(bookingId);
+		} catch (RuntimeException e) {
+			bookingDAO.delete(bookingId);
+			throw e;
+		}
+		return bookingId;
+	}
+
+	private void compensate(BookingRequest bookingRequest, CompletableFuture<String> roomId,
+			CompletableFuture<String> paymentId) {
+		if (paymentId.isDone() && !paymentId.isCompletedExceptionally() && paymentId.join() != null) {
+			paymentService.refund(paymentId.join());
+		}
+		if (roomId.isDone() && !roomId.isCompletedExceptionally()) {
+			roomService.unbookRoom(roomId.join(), bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+		}
+	}
+
+	private String book(BookingRequest bookingRequest, String roomId) {
 		double price = calculatePrice(bookingRequest);
 
 		if (bookingRequest.isPrepaid()) {
-			paymentService.pay(bookingRequest, price);
+			try {
+				paymentService.pay(bookingRequest, price);
+			} catch (RuntimeException e) {
+				roomService.unbookRoom(roomId, bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+				throw e;
+			}
 		}
 
 		bookingRequest.setRoomId(roomId);
 		String bookingId = bookingDAO.save(bookingRequest);
-		roomService.bookRoom(roomId);
 		mailSender.sendBookingConfirmation(bookingId);
 		return bookingId;
 	}
 	
+	public List<BookingResult> makeBookings(List<BookingRequest> bookingRequests) {
+		int size = bookingRequests.size();
+		String[] roomIds = roomService.claimAvailableRooms(bookingRequests);
+		RuntimeException[] errors = new RuntimeException[size];
+		Map<String, List<Integer>> prepaidByPayer = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			if (roomIds[i] == null) {
+				errors[i] = BusinessException.NO_ROOM;
+			} else if (bookingRequests.get(i).isPrepaid()) {
+				prepaidByPayer.computeIfAbsent(bookingRequests.get(i).getUserId(), userId -> new ArrayList<>()).add(i);
+			}
+		}
+
+		for (List<Integer> payerRequests : prepaidByPayer.values()) {
+			List<Integer> payable = new ArrayList<>(payerRequests.size());
+			List<BookingRequest> payerBookings = new ArrayList<>(payerRequests.size());
+			double price = 0;
+			for (int i : payerRequests) {
+				BookingRequest bookingRequest = bookingRequests.get(i);
+				double bookingPrice = calculatePrice(bookingRequest);
+				try {
+					paymentService.validate(bookingRequest, bookingPrice);
+				} catch (RuntimeException e) {
+					roomService.unbookRoom(roomIds[i], bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+					errors[i] = e;
+					continue;
+				}
+				payable.add(i);
+				payerBookings.add(bookingRequest);
+				price += bookingPrice;
+			}
+			if (payable.isEmpty()) {
+				continue;
+			}
+			try {
+				paymentService.payAll(payerBookings, price);
+			} catch (RuntimeException e) {
+				for (int i : payable) {
+					BookingRequest bookingRequest = bookingRequests.get(i);
+					roomService.unbookRoom(roomIds[i], bookingRequest.getDateFrom(), bookingRequest.getDateTo());
+					errors[i] = e;
+				}
+			}
+		}
+
+		List<BookingRequest> toSave = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (errors[i] == null) {
+				bookingRequests.get(i).setRoomId(roomIds[i]);
+				toSave.add(bookingRequests.get(i));
+			}
+		}
+		List<String> bookingIds = bookingDAO.saveAll(toSave);
+		RuntimeException mailError = null;
+		try {
+			mailSender.sendBookingConfirmations(bookingIds);
+		} catch (RuntimeException e) {
+			mailError = e;
+		}
+
+		List<BookingResult> results = new ArrayList<>(size);
+		Iterator<String> savedIds = bookingIds.iterator();
+		for (int i = 0; i < size; i++) {
+			if (errors[i] == null) {
+				results.add(new BookingResult(bookingRequests.get(i), savedIds.hasNext() ? savedIds.next() : null, mailError));
+			} else {
+				results.add(new BookingResult(bookingRequests.get(i), null, errors[i]));
+			}
+		}
+		return results;
+	}
+
+	public void close() {
+		if (ownsRoomService) {
+			roomService.close();
+		}
+	}
+
 	public void cancelBooking(String id) {
 		BookingRequest request = bookingDAO.get(id);
-		roomService.unbookRoom(request.getRoomId());
+		roomService.unbookRoom(request.getRoomId(), request.getDateFrom(), request.getDateTo());
 		bookingDAO.delete(id);
 	}
 
-	public BookingService(PaymentService paymentService, RoomService roomService, BookingDAO bookingDAO,
+	public BookingService(PaymentService paymentService, RoomEngine roomService, BookingDAO bookingDAO,
 			MailSender mailSender) {
+		this(paymentService, roomService, bookingDAO, mailSender, new PricingEngine(), EngineMode.CONCURRENT);
+	}
+
+	public BookingService(PaymentService paymentService, RoomEngine roomService, BookingDAO bookingDAO,
+			MailSender mailSender, PricingEngine pricingEngine) {
+		this(paymentService, roomService, bookingDAO, mailSender, pricingEngine, EngineMode.CONCURRENT);
+	}
+
+	public BookingService(PaymentService paymentService, RoomEngine roomService, BookingDAO bookingDAO,
+			MailSender mailSender, EngineMode engineMode) {
+		this(paymentService, roomService, bookingDAO, mailSender, new PricingEngine(), engineMode);
+	}
+
+	public BookingService(PaymentService paymentService, RoomEngine roomService, BookingDAO bookingDAO,
+			MailSender mailSender, PricingEngine pricingEngine, EngineMode engineMode) {
+		this(paymentService, roomService, bookingDAO, mailSender, pricingEngine, engineMode, SHARED_PAYMENT_EXECUTOR);
+	}
+
+	public BookingService(PaymentService paymentService, RoomEngine roomService, BookingDAO bookingDAO,
+			MailSender mailSender, PricingEngine pricingEngine, EngineMode engineMode, ExecutorService paymentExecutor) {
 		super();
 		this.paymentService = paymentService;
-		this.roomService = roomService;
+		this.roomService = engineMode != EngineMode.SINGLE_WRITER ? roomService
+				: roomService instanceof PartitionedRoomService ? ((PartitionedRoomService) roomService).withSingleWriters()
+				: roomService instanceof RoomService ? new SingleWriterRoomService((RoomService) roomService)
+				: roomService;
+		this.ownsRoomService = this.roomService != roomService;
 		this.bookingDAO = bookingDAO;
 		this.mailSender = mailSender;
+		this.pricingEngine = pricingEngine;
+		this.paymentExecutor = paymentExecutor;
+	}
+
+	private static ExecutorService newPaymentExecutor() {
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(PAYMENT_THREADS, PAYMENT_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "booking-payment-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
 	}
 
 }
@@ -0,0 +1,28 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * In-memory bookings behind {@link BookingDAO}, iterated to write journal
+ * snapshots.
+ */
+interface BookingStore extends Iterable<Map.Entry<String, BookingRequest>> {
+
+	void put(String id, BookingRequest bookingRequest);
+
+	void remove(String id);
+
+	BookingRequest get(String id);
+
+	Map<String, BookingRequest> findByUserId(String userId);
+
+	Map<String, BookingRequest> findByRoomId(String roomId);
+
+	Map<String, BookingRequest> findByDateFrom(LocalDate from, LocalDate to);
+
+	int size();
+
+	Stays stays();
+
+}
@@ -2,4 +2,14 @@ package com.mockitotutorial.happyhotel.booking;
 
 public class BusinessException extends RuntimeException {
 
+	static final BusinessException NO_ROOM = new BusinessException(false);
+
+	public BusinessException() {
+		super();
+	}
+
+	BusinessException(boolean writableStackTrace) {
+		super(null, null, false, writableStackTrace);
+	}
+
 }
@@ -0,0 +1,479 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bookings kept as parallel primitive columns, one row per booking: the id as
+ * a long, dates as epoch days, the guest count, a prepaid bit and user, room
+ * and property ids encoded through a shared dictionary. Rows are found by id
+ * through an open-addressing table of row numbers; deleting a booking moves the last row
+ * into its place. Nothing refers to a row from outside, so the collector has
+ * a few large arrays to look at instead of millions of small objects. Reads
+ * build a new {@link BookingRequest} from the row. Like
+ * {@link HeapBookingStore}, lookups by user, room or date go through
+ * indexes, here lists of row numbers per dictionary code and per epoch day.
+ * Dictionary codes are counted by the rows using them and reused once no row
+ * does. Reads share a read lock, changes take the write lock. Ids must be in
+ * the {@link IdGenerator} format.
+ */
+class ColumnarBookingStore implements BookingStore {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int NO_DATE = Integer.MIN_VALUE;
+	private static final int NO_CODE = -1;
+
+	/**
+	 * Row numbers of one index key, in no particular order.
+	 */
+	private static class Rows {
+
+		private int[] rows = new int[4];
+		private int size;
+
+		void add(int row) {
+			if (size == rows.length) {
+				rows = Arrays.copyOf(rows, size * 2);
+			}
+			rows[size++] = row;
+		}
+
+		boolean remove(int row) {
+			rows[indexOf(row)] = rows[--size];
+			return size == 0;
+		}
+
+		void replace(int row, int by) {
+			rows[indexOf(row)] = by;
+		}
+
+		int[] sorted() {
+			int[] sorted = Arrays.copyOf(rows, size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+
+		private int indexOf(int row) {
+			int i = 0;
+			while (rows[i] != row) {
+				i++;
+			}
+			return i;
+		}
+	}
+
+	private final Lock readLock;
+	private final Lock writeLock;
+
+	private final Map<String, Integer> codes = new HashMap<>();
+	private final List<String> values = new ArrayList<>();
+	private final Deque<Integer> freeCodes = new ArrayDeque<>();
+	private final NavigableMap<Integer, Rows> rowsByDateFrom = new TreeMap<>();
+	private int[] codeReferences = new int[16];
+	private Rows[] rowsByUser = new Rows[16];
+	private Rows[] rowsByRoom = new Rows[16];
+
+	private long[] ids;
+	private int[] datesFrom;
+	private int[] datesTo;
+	private int[] guestCounts;
+	private long[] prepaid;
+	private int[] userCodes;
+	private int[] roomCodes;
+	private int[] propertyCodes;
+	private int size;
+
+	private int[] slotRows;
+
+	ColumnarBookingStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	ColumnarBookingStore(int expectedBookings) {
+		ReadWriteLock lock = new ReentrantReadWriteLock();
+		this.readLock = lock.readLock();
+		this.writeLock = lock.writeLock();
+		resize(Math.max(expectedBookings, 16));
+		rehash(Integer.highestOneBit(Math.max(expectedBookings * 2 - 1, 16)) << 1);
+	}
+
+	@Override
+	public void put(String id, BookingRequest bookingRequest) {
+		long key = IdGenerator.parse(id);
+		writeLock.lock();
+		try {
+			int row = find(key);
+			if (row < 0) {
+				if (size == ids.length) {
+					resize(size * 2);
+				}
+				if ((size + 1) * 2 > slotRows.length) {
+					rehash(slotRows.length * 2);
+				}
+				row = size++;
+				ids[row] = key;
+				insert(key, row);
+			} else {
+				unindex(row);
+			}
+			datesFrom[row] = toEpochDay(bookingRequest.getDateFrom());
+			datesTo[row] = toEpochDay(bookingRequest.getDateTo());
+			guestCounts[row] = bookingRequest.getGuestCount();
+			setPrepaid(row, bookingRequest.isPrepaid());
+			userCodes[row] = encode(bookingRequest.getUserId());
+			roomCodes[row] = encode(bookingRequest.getRoomId());
+			propertyCodes[row] = encode(bookingRequest.getPropertyId());
+			index(row);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void remove(String id) {
+		writeLock.lock();
+		try {
+			int row = row(id);
+			if (row < 0) {
+				return;
+			}
+			unindex(row);
+			delete(ids[row]);
+			int last = --size;
+			if (row != last) {
+				ids[row] = ids[last];
+				datesFrom[row] = datesFrom[last];
+				datesTo[row] = datesTo[last];
+				guestCounts[row] = guestCounts[last];
+				setPrepaid(row, isPrepaid(last));
+				userCodes[row] = userCodes[last];
+				roomCodes[row] = roomCodes[last];
+				propertyCodes[row] = propertyCodes[last];
+				slotRows[locate(ids[row])] = row + 1;
+				reindex(last, row);
+			}
+			setPrepaid(last, false);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public BookingRequest get(String id) {
+		readLock.lock();
+		try {
+			int row = row(id);
+			return row < 0 ? null : materialize(row);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Map<String, BookingRequest> findByUserId(String userId) {
+		readLock.lock();
+		try {
+			return lookup(rowsByUser, codes.get(userId));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Map<String, BookingRequest> findByRoomId(String roomId) {
+		readLock.lock();
+		try {
+			return lookup(rowsByRoom, codes.get(roomId));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Map<String, BookingRequest> findByDateFrom(LocalDate from, LocalDate to) {
+		int first = toBound(from);
+		int end = toBound(to);
+		readLock.lock();
+		try {
+			Map<String, BookingRequest> result = new LinkedHashMap<>();
+			for (Rows rows : rowsByDateFrom.subMap(first, true, end, false).values()) {
+				for (int row : rows.sorted()) {
+					result.put(IdGenerator.format(ids[row]), materialize(row));
+				}
+			}
+			return result;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		readLock.lock();
+		try {
+			return size;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Stays stays() {
+		readLock.lock();
+		try {
+			Stays stays = new Stays(size);
+			for (int row = 0; row < size; row++) {
+				if (datesFrom[row] != NO_DATE && datesTo[row] != NO_DATE) {
+					stays.add(datesFrom[row], datesTo[row], guestCounts[row]);
+				}
+			}
+			return stays;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public Iterator<Map.Entry<String, BookingRequest>> iterator() {
+		return new Iterator<Map.Entry<String, BookingRequest>>() {
+
+			private int row;
+
+			@Override
+			public boolean hasNext() {
+				readLock.lock();
+				try {
+					return row < size;
+				} finally {
+					readLock.unlock();
+				}
+			}
+
+			@Override
+			public Map.Entry<String, BookingRequest> next() {
+				readLock.lock();
+				try {
+					if (row >= size) {
+						throw new NoSuchElementException();
+					}
+					Map.Entry<String, BookingRequest> entry = new AbstractMap.SimpleImmutableEntry<>(
+							IdGenerator.format(ids[row]), materialize(row));
+					row++;
+					return entry;
+				} finally {
+					readLock.unlock();
+				}
+			}
+		};
+	}
+
+	int getDictionarySize() {
+		readLock.lock();
+		try {
+			return values.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private Map<String, BookingRequest> lookup(Rows[] index, Integer code) {
+		if (code == null || index[code] == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, BookingRequest> result = new LinkedHashMap<>();
+		for (int row : index[code].sorted()) {
+			result.put(IdGenerator.format(ids[row]), materialize(row));
+		}
+		return result;
+	}
+
+	private void index(int row) {
+		if (userCodes[row] != NO_CODE) {
+			rows(rowsByUser, userCodes[row]).add(row);
+		}
+		if (roomCodes[row] != NO_CODE) {
+			rows(rowsByRoom, roomCodes[row]).add(row);
+		}
+		if (datesFrom[row] != NO_DATE) {
+			rowsByDateFrom.computeIfAbsent(datesFrom[row], day -> new Rows()).add(row);
+		}
+	}
+
+	private void unindex(int row) {
+		if (userCodes[row] != NO_CODE && rowsByUser[userCodes[row]].remove(row)) {
+			rowsByUser[userCodes[row]] = null;
+		}
+		if (roomCodes[row] != NO_CODE && rowsByRoom[roomCodes[row]].remove(row)) {
+			rowsByRoom[roomCodes[row]] = null;
+		}
+		if (datesFrom[row] != NO_DATE && rowsByDateFrom.get(datesFrom[row]).remove(row)) {
+			rowsByDateFrom.remove(datesFrom[row]);
+		}
+		release(userCodes[row]);
+		release(roomCodes[row]);
+		release(propertyCodes[row]);
+	}
+
+	private void reindex(int row, int by) {
+		if (userCodes[by] != NO_CODE) {
+			rowsByUser[userCodes[by]].replace(row, by);
+		}
+		if (roomCodes[by] != NO_CODE) {
+			rowsByRoom[roomCodes[by]].replace(row, by);
+		}
+		if (datesFrom[by] != NO_DATE) {
+			rowsByDateFrom.get(datesFrom[by]).replace(row, by);
+		}
+	}
+
+	private static Rows rows(Rows[] index, int code) {
+		if (index[code] == null) {
+			index[code] = new Rows();
+		}
+		return index[code];
+	}
+
+	private BookingRequest materialize(int row) {
+		BookingRequest bookingRequest = new BookingRequest(decode(userCodes[row]), toDate(datesFrom[row]),
+				toDate(datesTo[row]), guestCounts[row], isPrepaid(row));
+		bookingRequest.setRoomId(decode(roomCodes[row]));
+		bookingRequest.setPropertyId(decode(propertyCodes[row]));
+		return bookingRequest;
+	}
+
+	private int encode(String value) {
+		if (value == null) {
+			return NO_CODE;
+		}
+		Integer code = codes.get(value);
+		if (code == null) {
+			if (freeCodes.isEmpty()) {
+				code = values.size();
+				values.add(value);
+				if (code == codeReferences.length) {
+					codeReferences = Arrays.copyOf(codeReferences, code * 2);
+					rowsByUser = Arrays.copyOf(rowsByUser, code * 2);
+					rowsByRoom = Arrays.copyOf(rowsByRoom, code * 2);
+				}
+			} else {
+				code = freeCodes.pop();
+				values.set(code, value);
+			}
+			codes.put(value, code);
+		}
+		codeReferences[code]++;
+		return code;
+	}
+
+	private void release(int code) {
+		if (code != NO_CODE && --codeReferences[code] == 0) {
+			codes.remove(values.get(code));
+			values.set(code, null);
+			freeCodes.push(code);
+		}
+	}
+
+	private String decode(int code) {
+		return code == NO_CODE ? null : values.get(code);
+	}
+
+	private boolean isPrepaid(int row) {
+		return (prepaid[row >>> 6] & 1L << row) != 0;
+	}
+
+	private void setPrepaid(int row, boolean value) {
+		if (value) {
+			prepaid[row >>> 6] |= 1L << row;
+		} else {
+			prepaid[row >>> 6] &= ~(1L << row);
+		}
+	}
+
+	private void resize(int capacity) {
+		ids = ids == null ? new long[capacity] : Arrays.copyOf(ids, capacity);
+		datesFrom = datesFrom == null ? new int[capacity] : Arrays.copyOf(datesFrom, capacity);
+		datesTo = datesTo == null ? new int[capacity] : Arrays.copyOf(datesTo, capacity);
+		guestCounts = guestCounts == null ? new int[capacity] : Arrays.copyOf(guestCounts, capacity);
+		prepaid = prepaid == null ? new long[(capacity + 63) >>> 6] : Arrays.copyOf(prepaid, (capacity + 63) >>> 6);
+		userCodes = userCodes == null ? new int[capacity] : Arrays.copyOf(userCodes, capacity);
+		roomCodes = roomCodes == null ? new int[capacity] : Arrays.copyOf(roomCodes, capacity);
+		propertyCodes = propertyCodes == null ? new int[capacity] : Arrays.copyOf(propertyCodes, capacity);
+	}
+
+	private int row(String id) {
+		try {
+			return find(IdGenerator.parse(id));
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	private int find(long key) {
+		int mask = slotRows.length - 1;
+		for (int slot = slot(key, mask); slotRows[slot] != 0; slot = (slot + 1) & mask) {
+			if (ids[slotRows[slot] - 1] == key) {
+				return slotRows[slot] - 1;
+			}
+		}
+		return -1;
+	}
+
+	private void insert(long key, int row) {
+		int mask = slotRows.length - 1;
+		int slot = slot(key, mask);
+		while (slotRows[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slotRows[slot] = row + 1;
+	}
+
+	private int locate(long key) {
+		int mask = slotRows.length - 1;
+		int slot = slot(key, mask);
+		while (ids[slotRows[slot] - 1] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void delete(long key) {
+		int mask = slotRows.length - 1;
+		int hole = locate(key);
+		for (int slot = (hole + 1) & mask; slotRows[slot] != 0; slot = (slot + 1) & mask) {
+			int home = slot(ids[slotRows[slot] - 1], mask);
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				slotRows[hole] = slotRows[slot];
+				hole = slot;
+			}
+		}
+		slotRows[hole] = 0;
+	}
+
+	private void rehash(int length) {
+		slotRows = new int[length];
+		for (int row = 0; row < size; row++) {
+			insert(ids[row], row);
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private static int toEpochDay(LocalDate date) {
+		return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+	}
+
+	private static int toBound(LocalDate date) {
+		return (int) Math.max(NO_DATE + 1, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+	}
+
+	private static LocalDate toDate(int epochDay) {
+		return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit on requests in flight, additive increase and multiplicative
+ * decrease. Each finished request reports when it started. A request slower
+ * than the latency target cuts the limit by a tenth, at most once per round:
+ * requests admitted before the last cut do not cut it again. A request within
+ * the target grows the limit by one per limit's worth of requests, as long as
+ * at least half of it is in use. Requests over the limit are refused, never
+ * queued. The limit is kept as the bits of a double in an atomic long and
+ * changed with compare-and-set, so finishing requests never take a lock.
+ */
+public class ConcurrencyLimiter {
+
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTargetNanos;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+	private final AtomicLong limitBits = new AtomicLong();
+	private final AtomicLong lastDecreaseNanos = new AtomicLong();
+
+	public ConcurrencyLimiter(int limit) {
+		this(limit, limit, limit, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTarget, TimeUnit unit) {
+		if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+			throw new IllegalArgumentException(
+					"Expected 1 <= minLimit <= initialLimit <= maxLimit: " + minLimit + ", " + initialLimit + ", "
+							+ maxLimit);
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTargetNanos = unit.toNanos(latencyTarget);
+		this.limitBits.set(Double.doubleToRawLongBits(initialLimit));
+		this.lastDecreaseNanos.set(System.nanoTime());
+	}
+
+	public boolean tryAcquire() {
+		for (;;) {
+			int current = inFlight.get();
+			if (current >= getLimit()) {
+				rejected.increment();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	public void release(long startNanos) {
+		long now = System.nanoTime();
+		int inUse = inFlight.getAndDecrement();
+		if (now - startNanos > latencyTargetNanos) {
+			long lastDecrease = lastDecreaseNanos.get();
+			if (startNanos - lastDecrease > 0 && lastDecreaseNanos.compareAndSet(lastDecrease, now)) {
+				long bits;
+				double limit;
+				do {
+					bits = limitBits.get();
+					limit = Double.longBitsToDouble(bits);
+				} while (!limitBits.compareAndSet(bits,
+						Double.doubleToRawLongBits(Math.max(minLimit, Math.floor(limit * BACKOFF_RATIO)))));
+			}
+			return;
+		}
+		long bits;
+		double limit;
+		do {
+			bits = limitBits.get();
+			limit = Double.longBitsToDouble(bits);
+			if (inUse * 2 < limit || limit >= maxLimit) {
+				return;
+			}
+		} while (!limitBits.compareAndSet(bits, Double.doubleToRawLongBits(Math.min(maxLimit, limit + 1 / limit))));
+	}
+
+	public int getLimit() {
+		return (int) Double.longBitsToDouble(limitBits.get());
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+}
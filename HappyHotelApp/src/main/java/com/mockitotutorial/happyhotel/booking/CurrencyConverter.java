@@ -1,11 +1,154 @@
 package com.mockitotutorial.happyhotel.booking;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Converts USD amounts into other currencies from an immutable {@link Rates}
+ * snapshot. A new snapshot is built off to the side and published with one
+ * volatile write, so readers never lock and a batch of conversions that holds
+ * on to one snapshot never mixes two rate sets.
+ * <p>
+ * Rates files are properties files mapping an ISO 4217 code to the units of
+ * that currency one US dollar buys, e.g. {@code EUR=0.85}.
+ * <p>
+ * {@link #toEuro} converts with the current rates of {@link #DEFAULT}, the
+ * converter a {@link PricingEngine} uses unless it is given its own.
+ */
 public class CurrencyConverter {
 
+	public static final String BASE_CURRENCY = "USD";
+
 	private static final double USD_TO_EUR_RATE = 0.85;
-	
+	private static final long SCALE = 100_000_000L;
+	private static final int BASE_FRACTION_DIGITS = 2;
+
+	/**
+	 * Rates as fixed-point multipliers from US cents to the minor unit of each
+	 * currency, scaled by 10^8. Amounts whose product would overflow a long
+	 * (above about 58,000 USD in rupiah) are multiplied in BigInteger.
+	 */
+	public static class Rates {
+
+		private final Map<String, Integer> indexes;
+		private final long[] multipliers;
+		private final long[] exactCents;
+		private final int[] fractionDigits;
+		private final double[] minorUnitsPerMajor;
+
+		Rates(Map<String, Double> rates) {
+			this.indexes = new HashMap<>();
+			this.multipliers = new long[rates.size()];
+			this.exactCents = new long[rates.size()];
+			this.fractionDigits = new int[rates.size()];
+			this.minorUnitsPerMajor = new double[rates.size()];
+			for (Map.Entry<String, Double> entry : rates.entrySet()) {
+				int index = indexes.size();
+				int digits = Currency.getInstance(entry.getKey()).getDefaultFractionDigits();
+				fractionDigits[index] = digits < 0 ? BASE_FRACTION_DIGITS : digits;
+				minorUnitsPerMajor[index] = Math.pow(10, fractionDigits[index]);
+				multipliers[index] = Math.round(
+						entry.getValue() * SCALE * minorUnitsPerMajor[index] / Math.pow(10, BASE_FRACTION_DIGITS));
+				exactCents[index] = multipliers[index] == 0 ? Long.MAX_VALUE
+						: (Long.MAX_VALUE - SCALE) / multipliers[index];
+				indexes.put(entry.getKey(), index);
+			}
+		}
+
+		public int indexOf(String currency) {
+			Integer index = indexes.get(currency);
+			if (index == null) {
+				throw new IllegalArgumentException("Unsupported currency: " + currency);
+			}
+			return index;
+		}
+
+		public long convert(long usdCents, int currency) {
+			if (usdCents <= exactCents[currency] && usdCents >= -exactCents[currency]) {
+				return Math.floorDiv(usdCents * multipliers[currency] + SCALE / 2, SCALE);
+			}
+			BigInteger[] quotient = BigInteger.valueOf(usdCents).multiply(BigInteger.valueOf(multipliers[currency]))
+					.add(BigInteger.valueOf(SCALE / 2)).divideAndRemainder(BigInteger.valueOf(SCALE));
+			BigInteger floor = quotient[1].signum() < 0 ? quotient[0].subtract(BigInteger.ONE) : quotient[0];
+			return floor.longValueExact();
+		}
+
+		public double toMajorUnits(long minorUnits, int currency) {
+			return minorUnits / minorUnitsPerMajor[currency];
+		}
+
+		public int getFractionDigits(int currency) {
+			return fractionDigits[currency];
+		}
+
+		public Set<String> getCurrencies() {
+			return Collections.unmodifiableSet(indexes.keySet());
+		}
+	}
+
+	public static final CurrencyConverter DEFAULT = new CurrencyConverter();
+
+	private volatile Rates rates;
+
+	public CurrencyConverter() {
+		Map<String, Double> defaults = new LinkedHashMap<>();
+		defaults.put(BASE_CURRENCY, 1.0);
+		defaults.put("EUR", USD_TO_EUR_RATE);
+		this.rates = new Rates(defaults);
+	}
+
+	public CurrencyConverter(Path ratesFile) throws IOException {
+		load(ratesFile);
+	}
+
 	public static double toEuro(double dollarAmount) {
-		return dollarAmount * USD_TO_EUR_RATE; 
+		return DEFAULT.convert(dollarAmount, "EUR");
 	}
-	
+
+	public void load(Path ratesFile) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(ratesFile, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		Map<String, Double> loaded = new TreeMap<>();
+		for (String currency : properties.stringPropertyNames()) {
+			double rate;
+			try {
+				rate = Double.parseDouble(properties.getProperty(currency).trim());
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid rate for " + currency + " in " + ratesFile, e);
+			}
+			if (!(rate > 0)) {
+				throw new IOException("Invalid rate for " + currency + " in " + ratesFile);
+			}
+			loaded.put(currency.trim(), rate);
+		}
+		loaded.put(BASE_CURRENCY, 1.0);
+		try {
+			this.rates = new Rates(loaded);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown currency in " + ratesFile, e);
+		}
+	}
+
+	public Rates getRates() {
+		return rates;
+	}
+
+	public long convert(long usdCents, String currency) {
+		Rates current = rates;
+		return current.convert(usdCents, current.indexOf(currency));
+	}
+
+	public double convert(double amountUsd, String currency) {
+		Rates current = rates;
+		int index = current.indexOf(currency);
+		return current.toMajorUnits(current.convert(Math.round(amountUsd * 100), index), index);
+	}
+
 }
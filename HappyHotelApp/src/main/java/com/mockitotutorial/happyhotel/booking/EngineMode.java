@@ -0,0 +1,14 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * How {@link BookingService} applies inventory mutations.
+ */
+public enum EngineMode {
+
+	/** Callers claim and release rooms themselves with compare-and-set. */
+	CONCURRENT,
+
+	/** Callers hand mutations to one writer thread, per partition, through a ring buffer. */
+	SINGLE_WRITER
+
+}
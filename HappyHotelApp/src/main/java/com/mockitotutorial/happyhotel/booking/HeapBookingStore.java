@@ -0,0 +1,113 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+class HeapBookingStore implements BookingStore {
+
+	private final Map<String, BookingRequest> bookings = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<String>> bookingsByUser = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<String>> bookingsByRoom = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<LocalDate, Set<String>> bookingsByDateFrom = new ConcurrentSkipListMap<>();
+
+	@Override
+	public void put(String id, BookingRequest bookingRequest) {
+		index(bookingsByUser, bookingRequest.getUserId(), id);
+		index(bookingsByRoom, bookingRequest.getRoomId(), id);
+		index(bookingsByDateFrom, bookingRequest.getDateFrom(), id);
+		bookings.put(id, bookingRequest);
+	}
+
+	@Override
+	public void remove(String id) {
+		BookingRequest bookingRequest = bookings.remove(id);
+		if (bookingRequest != null) {
+			unindex(bookingsByUser, bookingRequest.getUserId(), id);
+			unindex(bookingsByRoom, bookingRequest.getRoomId(), id);
+			unindex(bookingsByDateFrom, bookingRequest.getDateFrom(), id);
+		}
+	}
+
+	@Override
+	public BookingRequest get(String id) {
+		return bookings.get(id);
+	}
+
+	@Override
+	public Map<String, BookingRequest> findByUserId(String userId) {
+		return lookup(bookingsByUser.get(userId));
+	}
+
+	@Override
+	public Map<String, BookingRequest> findByRoomId(String roomId) {
+		return lookup(bookingsByRoom.get(roomId));
+	}
+
+	@Override
+	public Map<String, BookingRequest> findByDateFrom(LocalDate from, LocalDate to) {
+		Map<String, BookingRequest> result = new LinkedHashMap<>();
+		for (Set<String> ids : bookingsByDateFrom.subMap(from, true, to, false).values()) {
+			result.putAll(lookup(ids));
+		}
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return bookings.size();
+	}
+
+	@Override
+	public Stays stays() {
+		Stays stays = new Stays(bookings.size());
+		for (BookingRequest bookingRequest : bookings.values()) {
+			if (bookingRequest.getDateFrom() != null && bookingRequest.getDateTo() != null) {
+				stays.add(Math.toIntExact(bookingRequest.getDateFrom().toEpochDay()),
+						Math.toIntExact(bookingRequest.getDateTo().toEpochDay()), bookingRequest.getGuestCount());
+			}
+		}
+		return stays;
+	}
+
+	@Override
+	public Iterator<Map.Entry<String, BookingRequest>> iterator() {
+		return bookings.entrySet().iterator();
+	}
+
+	private Map<String, BookingRequest> lookup(Set<String> ids) {
+		if (ids == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, BookingRequest> result = new LinkedHashMap<>();
+		for (String id : ids) {
+			BookingRequest bookingRequest = bookings.get(id);
+			if (bookingRequest != null) {
+				result.put(id, bookingRequest);
+			}
+		}
+		return result;
+	}
+
+	private static <K> void index(ConcurrentMap<K, Set<String>> index, K key, String id) {
+		if (key != null) {
+			index.compute(key, (k, ids) -> {
+				Set<String> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+				result.add(id);
+				return result;
+			});
+		}
+	}
+
+	private static <K> void unindex(ConcurrentMap<K, Set<String>> index, K key, String id) {
+		if (key != null) {
+			index.computeIfPresent(key, (k, ids) -> {
+				ids.remove(id);
+				return ids.isEmpty() ? null : ids;
+			});
+		}
+	}
+
+}
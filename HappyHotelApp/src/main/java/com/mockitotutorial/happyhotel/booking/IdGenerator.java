@@ -0,0 +1,42 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * Source of unique ids for bookings and payments. Ids are 64-bit values shown
+ * as 13-character Crockford base32 strings, so string order matches numeric
+ * order.
+ */
+public interface IdGenerator {
+
+	String BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+	long nextId();
+
+	default String nextIdString() {
+		return format(nextId());
+	}
+
+	static String format(long id) {
+		char[] chars = new char[13];
+		chars[0] = BASE32.charAt((int) (id >>> 60));
+		for (int i = 1; i < chars.length; i++) {
+			chars[i] = BASE32.charAt((int) (id >>> 5 * (12 - i)) & 0x1F);
+		}
+		return new String(chars);
+	}
+
+	static long parse(String id) {
+		if (id.length() != 13) {
+			throw new IllegalArgumentException("Not an id: " + id);
+		}
+		long value = 0;
+		for (int i = 0; i < id.length(); i++) {
+			int digit = BASE32.indexOf(id.charAt(i));
+			if (digit < 0 || (i == 0 && digit > 0xF)) {
+				throw new IllegalArgumentException("Not an id: " + id);
+			}
+			value = value << 5 | digit;
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,300 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log on a memory-mapped file, with a compacted snapshot
+ * next to it. Each record is stored as length, CRC32 and payload; a zero
+ * length marks the end of the log. Records are appended and applied under a
+ * shared lock that compaction takes exclusively, so a snapshot never falls
+ * between a record and its effect. {@link #appendIf} also checks a condition
+ * (or makes a change that may fail) under that lock, before anything is
+ * written.
+ * <p>
+ * With {@link Durability#GROUP_COMMIT} the first writer waiting for an fsync
+ * becomes the leader and forces everything appended so far, so concurrent
+ * writers share a single fsync.
+ * <p>
+ * Compaction writes the snapshot to a new file and renames it over the old
+ * one, then zeroes only the part of the log written since the last
+ * compaction. Concurrent {@link #compactIfDue} calls let one caller compact
+ * and return at once.
+ */
+public class Journal implements Closeable {
+
+	public enum Durability {
+		SYNC, GROUP_COMMIT
+	}
+
+	private static final int HEADER_BYTES = 8;
+	private static final int DEFAULT_REGION_BYTES = 8 * 1024 * 1024;
+	private static final int DEFAULT_COMPACTION_INTERVAL = 100_000;
+
+	private final Path snapshotFile;
+	private final Durability durability;
+	private final int regionBytes;
+	private final int compactionInterval;
+	private final FileChannel channel;
+	private final CRC32 crc = new CRC32();
+	private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+	private final Object commitLock = new Object();
+	private final AtomicBoolean compacting = new AtomicBoolean();
+
+	private MappedByteBuffer region;
+	private long regionStart;
+	private long appended;
+	private long appendsSinceCompaction;
+	private long committed;
+	private boolean committing;
+
+	public Journal(Path journalFile, Durability durability) {
+		this(journalFile, durability, DEFAULT_REGION_BYTES, DEFAULT_COMPACTION_INTERVAL);
+	}
+
+	public Journal(Path journalFile, Durability durability, int regionBytes, int compactionInterval) {
+		this.snapshotFile = journalFile.resolveSibling(journalFile.getFileName() + ".snapshot");
+		this.durability = durability;
+		this.regionBytes = regionBytes;
+		this.compactionInterval = compactionInterval;
+		try {
+			this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(regionBytes, channel.size()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		while (readRecord(region, null)) {
+			appendsSinceCompaction++;
+		}
+	}
+
+	public void replay(Consumer<byte[]> consumer) {
+		try {
+			if (Files.exists(snapshotFile)) {
+				try (FileChannel snapshot = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+					ByteBuffer buffer = snapshot.map(FileChannel.MapMode.READ_ONLY, 0, snapshot.size());
+					while (readRecord(buffer, consumer)) {
+					}
+				}
+			}
+			ByteBuffer buffer;
+			synchronized (this) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, regionStart + region.position());
+			}
+			while (readRecord(buffer, consumer)) {
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void append(byte[] record, Runnable apply) {
+		compactionLock.readLock().lock();
+		try {
+			commit(write(record));
+			apply.run();
+		} finally {
+			compactionLock.readLock().unlock();
+		}
+	}
+
+	public boolean appendIf(byte[] record, BooleanSupplier condition, Runnable apply) {
+		compactionLock.readLock().lock();
+		try {
+			if (!condition.getAsBoolean()) {
+				return false;
+			}
+			commit(write(record));
+			apply.run();
+			return true;
+		} finally {
+			compactionLock.readLock().unlock();
+		}
+	}
+
+	public void appendAll(List<byte[]> records, Runnable apply) {
+		compactionLock.readLock().lock();
+		try {
+			long sequence = 0;
+			for (byte[] record : records) {
+				sequence = write(record);
+			}
+			commit(sequence);
+			apply.run();
+		} finally {
+			compactionLock.readLock().unlock();
+		}
+	}
+
+	public void compactIfDue(Supplier<Iterable<byte[]>> snapshot) {
+		if (!isCompactionDue() || !compacting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			if (isCompactionDue()) {
+				compact(snapshot);
+			}
+		} finally {
+			compacting.set(false);
+		}
+	}
+
+	public void compact(Supplier<Iterable<byte[]>> snapshot) {
+		compactionLock.writeLock().lock();
+		try {
+			Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+			try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				CRC32 snapshotCrc = new CRC32();
+				for (byte[] record : snapshot.get()) {
+					ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + record.length);
+					snapshotCrc.reset();
+					snapshotCrc.update(record, 0, record.length);
+					buffer.putInt(record.length).putInt((int) snapshotCrc.getValue()).put(record).flip();
+					while (buffer.hasRemaining()) {
+						out.write(buffer);
+					}
+				}
+				out.force(true);
+			}
+			Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			synchronized (this) {
+				long used = regionStart + region.position();
+				regionStart = 0;
+				region = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(regionBytes, channel.size()));
+				byte[] zeros = new byte[64 * 1024];
+				while (region.position() < used) {
+					region.put(zeros, 0, (int) Math.min(zeros.length, used - region.position()));
+				}
+				region.force();
+				region.clear();
+				appendsSinceCompaction = 0;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			compactionLock.writeLock().unlock();
+		}
+	}
+
+	private synchronized boolean isCompactionDue() {
+		return appendsSinceCompaction >= compactionInterval;
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			region.force();
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private synchronized long write(byte[] record) {
+		if (region.remaining() < HEADER_BYTES + record.length + HEADER_BYTES) {
+			region.force();
+			regionStart += region.position();
+			try {
+				region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart,
+						Math.max(regionBytes, HEADER_BYTES + record.length + HEADER_BYTES));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		crc.reset();
+		crc.update(record, 0, record.length);
+		region.putInt(record.length).putInt((int) crc.getValue()).put(record);
+		appendsSinceCompaction++;
+		return appended += HEADER_BYTES + record.length;
+	}
+
+	private void commit(long sequence) {
+		if (durability == Durability.SYNC) {
+			synchronized (this) {
+				region.force();
+			}
+		} else {
+			awaitCommit(sequence);
+		}
+	}
+
+	private void awaitCommit(long sequence) {
+		synchronized (commitLock) {
+			while (committing && committed < sequence) {
+				try {
+					commitLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(e);
+				}
+			}
+			if (committed >= sequence) {
+				return;
+			}
+			committing = true;
+		}
+		MappedByteBuffer toForce;
+		long target;
+		synchronized (this) {
+			toForce = region;
+			target = appended;
+		}
+		boolean forced = false;
+		try {
+			toForce.force();
+			forced = true;
+		} finally {
+			synchronized (commitLock) {
+				if (forced) {
+					committed = Math.max(committed, target);
+				}
+				committing = false;
+				commitLock.notifyAll();
+			}
+		}
+	}
+
+	private boolean readRecord(ByteBuffer buffer, Consumer<byte[]> consumer) {
+		if (buffer.remaining() < HEADER_BYTES) {
+			return false;
+		}
+		int start = buffer.position();
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+		if (length <= 0 || length > buffer.remaining()) {
+			buffer.position(start);
+			return false;
+		}
+		byte[] record = new byte[length];
+		buffer.get(record);
+		CRC32 recordCrc = new CRC32();
+		recordCrc.update(record, 0, length);
+		if ((int) recordCrc.getValue() != checksum) {
+			buffer.position(start);
+			return false;
+		}
+		if (consumer != null) {
+			consumer.accept(record);
+		}
+		return true;
+	}
+
+}
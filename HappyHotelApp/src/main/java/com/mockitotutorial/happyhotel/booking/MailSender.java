@@ -1,5 +1,7 @@
 package com.mockitotutorial.happyhotel.booking;
 
+import java.util.List;
+
 public class MailSender {
 
 	public void sendBookingConfirmation(String bookingId) {
@@ -7,4 +9,10 @@ public class MailSender {
 		throw new UnsupportedOperationException("Not implemented yet");
 	}
 
+	public void sendBookingConfirmations(List<String> bookingIds) {
+		for (String bookingId : bookingIds) {
+			sendBookingConfirmation(bookingId);
+		}
+	}
+
 }
@@ -0,0 +1,99 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+
+/**
+ * Occupancy and revenue per night over a window of nights, computed by
+ * {@link BookingAnalytics}. Revenue is in US dollars and attributed to the
+ * night it was earned; stay lengths are those of the bookings that overlap
+ * the window, with the last histogram bucket counting stays of
+ * {@link #MAX_STAY_LENGTH} nights or more.
+ */
+public class OccupancyReport {
+
+	public static final int MAX_STAY_LENGTH = 30;
+
+	private final LocalDate firstNight;
+	private final int roomCount;
+	private final int[] occupiedRooms;
+	private final long[] revenueCents;
+	private final long bookingCount;
+	private final long stayNights;
+	private final int[] stayLengths;
+
+	OccupancyReport(LocalDate firstNight, int roomCount, int[] occupiedRooms, long[] revenueCents, long bookingCount,
+			long stayNights, int[] stayLengths) {
+		this.firstNight = firstNight;
+		this.roomCount = roomCount;
+		this.occupiedRooms = occupiedRooms;
+		this.revenueCents = revenueCents;
+		this.bookingCount = bookingCount;
+		this.stayNights = stayNights;
+		this.stayLengths = stayLengths;
+	}
+
+	public LocalDate getFirstNight() {
+		return firstNight;
+	}
+
+	public int getNights() {
+		return occupiedRooms.length;
+	}
+
+	public int getRoomCount() {
+		return roomCount;
+	}
+
+	public int[] getOccupiedRooms() {
+		return occupiedRooms.clone();
+	}
+
+	public double[] getOccupancy() {
+		double[] occupancy = new double[occupiedRooms.length];
+		for (int night = 0; night < occupancy.length; night++) {
+			occupancy[night] = roomCount == 0 ? 0 : (double) occupiedRooms[night] / roomCount;
+		}
+		return occupancy;
+	}
+
+	public double[] getRevenue() {
+		double[] revenue = new double[revenueCents.length];
+		for (int night = 0; night < revenue.length; night++) {
+			revenue[night] = revenueCents[night] / 100.0;
+		}
+		return revenue;
+	}
+
+	public double getTotalRevenue() {
+		long cents = 0;
+		for (long nightCents : revenueCents) {
+			cents += nightCents;
+		}
+		return cents / 100.0;
+	}
+
+	public double getOccupancyRate() {
+		long occupied = 0;
+		for (int rooms : occupiedRooms) {
+			occupied += rooms;
+		}
+		return roomCount == 0 ? 0 : (double) occupied / ((long) roomCount * occupiedRooms.length);
+	}
+
+	public double getRevenuePerAvailableRoom() {
+		return roomCount == 0 ? 0 : getTotalRevenue() / ((long) roomCount * occupiedRooms.length);
+	}
+
+	public long getBookingCount() {
+		return bookingCount;
+	}
+
+	public double getAverageStayLength() {
+		return bookingCount == 0 ? 0 : (double) stayNights / bookingCount;
+	}
+
+	public int[] getStayLengthHistogram() {
+		return stayLengths.clone();
+	}
+
+}
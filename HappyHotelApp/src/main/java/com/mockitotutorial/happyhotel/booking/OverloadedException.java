@@ -0,0 +1,17 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * Thrown instead of running a request that admission control has no room
+ * for. Unlike other business failures it says nothing about the request
+ * itself, so it can be retried later. One shared instance without a stack
+ * trace, so shedding load costs next to nothing.
+ */
+public class OverloadedException extends BusinessException {
+
+	static final OverloadedException INSTANCE = new OverloadedException();
+
+	private OverloadedException() {
+		super(false);
+	}
+
+}
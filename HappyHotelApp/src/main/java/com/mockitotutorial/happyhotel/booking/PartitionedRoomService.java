@@ -0,0 +1,403 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Inventory of several properties, each held by its own {@link RoomService}
+ * partition with its own calendar and counters, so bookings in different
+ * properties never touch shared state. A request pinned to a property with
+ * {@link BookingRequest#setPropertyId} only searches that partition; otherwise
+ * the search fans out over all partitions on a fork/join pool and takes the
+ * best room (the smallest that fits), preferring earlier partitions on ties.
+ * Runs of partitions with at most 4,096 rooms between them, or any search on a
+ * single-threaded pool, are scanned sequentially and stop at the first exact
+ * fit, since forking costs more than scanning them. Unpinned batches are
+ * dealt round-robin to the partitions and claimed in parallel; leftovers then
+ * go through the single claim path, and requests pinned to an unknown
+ * property are left unclaimed. {@link #withSingleWriters()} gives each
+ * partition its own {@link SingleWriterRoomService} writer thread.
+ */
+public class PartitionedRoomService implements RoomEngine {
+
+	private static final int DEFAULT_CALENDAR_NIGHTS = 2 * 366;
+	private static final int SEQUENTIAL_SEARCH_ROOMS = 4096;
+	private static final String TOKEN_SEPARATOR = "-";
+
+	private final List<String> propertyIds = new ArrayList<>();
+	private final List<RoomService> roomServices = new ArrayList<>();
+	private final List<RoomEngine> partitions = new ArrayList<>();
+	private final Map<String, Integer> partitionByProperty = new HashMap<>();
+	private final Map<String, Integer> partitionByRoom = new HashMap<>();
+	private final List<Integer> roomsBefore = new ArrayList<>();
+	private final AllocationPolicy allocationPolicy;
+	private final ForkJoinPool pool;
+
+	private class SearchTask extends RecursiveTask<Room> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BookingRequest bookingRequest;
+		private final int from;
+		private final int to;
+
+		SearchTask(BookingRequest bookingRequest, int from, int to) {
+			this.bookingRequest = bookingRequest;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Room compute() {
+			if (to - from == 1 || roomsBefore.get(to) - roomsBefore.get(from) <= SEQUENTIAL_SEARCH_ROOMS) {
+				return search(bookingRequest, from, to);
+			}
+			int middle = (from + to) >>> 1;
+			SearchTask right = new SearchTask(bookingRequest, middle, to);
+			right.fork();
+			Room left = new SearchTask(bookingRequest, from, middle).compute();
+			return better(left, right.join());
+		}
+	}
+
+	private class ClaimTask extends RecursiveTask<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<List<BookingRequest>> shares;
+		private final List<String[]> claimed;
+		private final int from;
+		private final int to;
+
+		ClaimTask(List<List<BookingRequest>> shares, List<String[]> claimed, int from, int to) {
+			this.shares = shares;
+			this.claimed = claimed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Void compute() {
+			if (to - from == 1) {
+				claimed.set(from, partitions.get(from).claimAvailableRooms(shares.get(from)));
+				return null;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ClaimTask(shares, claimed, from, middle), new ClaimTask(shares, claimed, middle, to));
+			return null;
+		}
+	}
+
+	public PartitionedRoomService(Map<String, ? extends Collection<Room>> roomsByProperty, Clock clock) {
+		this(roomsByProperty, clock, DEFAULT_CALENDAR_NIGHTS, AllocationPolicy.BEST_FIT, ForkJoinPool.commonPool());
+	}
+
+	public PartitionedRoomService(Map<String, ? extends Collection<Room>> roomsByProperty, Clock clock,
+			int calendarNights, AllocationPolicy allocationPolicy, ForkJoinPool pool) {
+		this.allocationPolicy = allocationPolicy;
+		this.pool = pool;
+		roomsBefore.add(0);
+		for (Map.Entry<String, ? extends Collection<Room>> entry : roomsByProperty.entrySet()) {
+			int partition = roomServices.size();
+			propertyIds.add(entry.getKey());
+			roomServices.add(new RoomService(entry.getValue(), clock, calendarNights, allocationPolicy));
+			partitionByProperty.put(entry.getKey(), partition);
+			for (Room room : entry.getValue()) {
+				if (partitionByRoom.put(room.getId(), partition) != null) {
+					throw new IllegalArgumentException("Duplicate room id: " + room.getId());
+				}
+			}
+			roomsBefore.add(partitionByRoom.size());
+		}
+		if (roomServices.isEmpty()) {
+			throw new IllegalArgumentException("No properties");
+		}
+		partitions.addAll(roomServices);
+	}
+
+	private PartitionedRoomService(PartitionedRoomService partitioned) {
+		this.allocationPolicy = partitioned.allocationPolicy;
+		this.pool = partitioned.pool;
+		propertyIds.addAll(partitioned.propertyIds);
+		partitionByProperty.putAll(partitioned.partitionByProperty);
+		partitionByRoom.putAll(partitioned.partitionByRoom);
+		roomsBefore.addAll(partitioned.roomsBefore);
+		roomServices.addAll(partitioned.roomServices);
+		for (RoomService roomService : roomServices) {
+			partitions.add(new SingleWriterRoomService(roomService));
+		}
+	}
+
+	/**
+	 * Returns a view of the same partitions that applies the mutations of each
+	 * partition on that partition's own writer thread. Closing the view stops
+	 * its writers; the partitions stay open until this service is closed.
+	 */
+	public PartitionedRoomService withSingleWriters() {
+		return new PartitionedRoomService(this);
+	}
+
+	@Override
+	public String findAvailableRoomId(BookingRequest bookingRequest) {
+		String roomId = tryFindAvailableRoom(bookingRequest);
+		if (roomId == null) {
+			throw BusinessException.NO_ROOM;
+		}
+		return roomId;
+	}
+
+	@Override
+	public String tryFindAvailableRoom(BookingRequest bookingRequest) {
+		Room room = findAvailableRoom(bookingRequest);
+		return room == null ? null : room.getId();
+	}
+
+	@Override
+	public Room findAvailableRoom(BookingRequest bookingRequest) {
+		if (bookingRequest.getPropertyId() != null) {
+			return getPartition(bookingRequest).findAvailableRoom(bookingRequest);
+		}
+		if (partitions.size() == 1 || pool.getParallelism() == 1 || partitionByRoom.size() <= SEQUENTIAL_SEARCH_ROOMS) {
+			return search(bookingRequest, 0, partitions.size());
+		}
+		return pool.invoke(new SearchTask(bookingRequest, 0, partitions.size()));
+	}
+
+	@Override
+	public String claimAvailableRoom(BookingRequest bookingRequest) {
+		String roomId = tryClaimAvailableRoom(bookingRequest);
+		if (roomId == null) {
+			throw BusinessException.NO_ROOM;
+		}
+		return roomId;
+	}
+
+	@Override
+	public String tryClaimAvailableRoom(BookingRequest bookingRequest) {
+		if (bookingRequest.getPropertyId() != null) {
+			return getPartition(bookingRequest).tryClaimAvailableRoom(bookingRequest);
+		}
+		Room room;
+		while ((room = findAvailableRoom(bookingRequest)) != null) {
+			String roomId = partitions.get(partitionByRoom.get(room.getId())).tryClaimAvailableRoom(bookingRequest);
+			if (roomId != null) {
+				return roomId;
+			}
+			// taken by a concurrent booking since the search, search again
+		}
+		return null;
+	}
+
+	@Override
+	public String[] claimAvailableRooms(List<BookingRequest> bookingRequests) {
+		String[] roomIds = new String[bookingRequests.size()];
+		List<List<BookingRequest>> shares = new ArrayList<>(partitions.size());
+		List<List<Integer>> shareIndexes = new ArrayList<>(partitions.size());
+		for (int p = 0; p < partitions.size(); p++) {
+			shares.add(new ArrayList<>());
+			shareIndexes.add(new ArrayList<>());
+		}
+		int next = 0;
+		for (int i = 0; i < bookingRequests.size(); i++) {
+			BookingRequest bookingRequest = bookingRequests.get(i);
+			Integer partition = bookingRequest.getPropertyId() == null ? Integer.valueOf(next++ % partitions.size())
+					: partitionByProperty.get(bookingRequest.getPropertyId());
+			if (partition == null) {
+				continue;
+			}
+			shares.get(partition).add(bookingRequest);
+			shareIndexes.get(partition).add(i);
+		}
+
+		List<String[]> claimed = new ArrayList<>(Collections.nCopies(partitions.size(), (String[]) null));
+		pool.invoke(new ClaimTask(shares, claimed, 0, partitions.size()));
+		for (int p = 0; p < partitions.size(); p++) {
+			for (int i = 0; i < claimed.get(p).length; i++) {
+				roomIds[shareIndexes.get(p).get(i)] = claimed.get(p)[i];
+			}
+		}
+
+		for (int i = 0; i < roomIds.length; i++) {
+			if (roomIds[i] == null && bookingRequests.get(i).getPropertyId() == null) {
+				roomIds[i] = tryClaimAvailableRoom(bookingRequests.get(i));
+			}
+		}
+		return roomIds;
+	}
+
+	@Override
+	public boolean isRoomAvailable(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		return getRoomPartition(roomId).isRoomAvailable(roomId, dateFrom, dateTo);
+	}
+
+	@Override
+	public List<Room> getAvailableRooms() {
+		List<Room> availableRooms = new ArrayList<>();
+		for (RoomEngine partition : partitions) {
+			availableRooms.addAll(partition.getAvailableRooms());
+		}
+		return availableRooms;
+	}
+
+	@Override
+	public int getAvailablePlaceCount() {
+		int places = 0;
+		for (RoomEngine partition : partitions) {
+			places += partition.getAvailablePlaceCount();
+		}
+		return places;
+	}
+
+	@Override
+	public int getAvailablePlaceCount(int capacity) {
+		int places = 0;
+		for (RoomEngine partition : partitions) {
+			places += partition.getAvailablePlaceCount(capacity);
+		}
+		return places;
+	}
+
+	@Override
+	public int getRoomCount() {
+		return partitionByRoom.size();
+	}
+
+	@Override
+	public AllocationPolicy getAllocationPolicy() {
+		return allocationPolicy;
+	}
+
+	@Override
+	public void bookRoom(String roomId) {
+		getRoomPartition(roomId).bookRoom(roomId);
+	}
+
+	@Override
+	public void bookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		getRoomPartition(roomId).bookRoom(roomId, dateFrom, dateTo);
+	}
+
+	@Override
+	public boolean tryBookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		return getRoomPartition(roomId).tryBookRoom(roomId, dateFrom, dateTo);
+	}
+
+	@Override
+	public void unbookRoom(String roomId) {
+		getRoomPartition(roomId).unbookRoom(roomId);
+	}
+
+	@Override
+	public void unbookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		getRoomPartition(roomId).unbookRoom(roomId, dateFrom, dateTo);
+	}
+
+	@Override
+	public String hold(String roomId, Duration ttl) {
+		int partition = getRoomPartitionIndex(roomId);
+		return partition + TOKEN_SEPARATOR + partitions.get(partition).hold(roomId, ttl);
+	}
+
+	@Override
+	public String hold(String roomId, LocalDate dateFrom, LocalDate dateTo, Duration ttl) {
+		int partition = getRoomPartitionIndex(roomId);
+		return partition + TOKEN_SEPARATOR + partitions.get(partition).hold(roomId, dateFrom, dateTo, ttl);
+	}
+
+	@Override
+	public void confirm(String token) {
+		getTokenPartition(token).confirm(token.substring(token.indexOf(TOKEN_SEPARATOR) + 1));
+	}
+
+	@Override
+	public void release(String token) {
+		getTokenPartition(token).release(token.substring(token.indexOf(TOKEN_SEPARATOR) + 1));
+	}
+
+	@Override
+	public int getHoldCount() {
+		int holds = 0;
+		for (RoomEngine partition : partitions) {
+			holds += partition.getHoldCount();
+		}
+		return holds;
+	}
+
+	@Override
+	public void close() {
+		for (RoomEngine partition : partitions) {
+			partition.close();
+		}
+	}
+
+	public List<String> getPropertyIds() {
+		return Collections.unmodifiableList(propertyIds);
+	}
+
+	public String getPropertyId(String roomId) {
+		Integer partition = partitionByRoom.get(roomId);
+		if (partition == null) {
+			throw new BusinessException();
+		}
+		return propertyIds.get(partition);
+	}
+
+	private RoomEngine getPartition(BookingRequest bookingRequest) {
+		return partitions.get(getPartitionIndex(bookingRequest));
+	}
+
+	private int getPartitionIndex(BookingRequest bookingRequest) {
+		Integer partition = partitionByProperty.get(bookingRequest.getPropertyId());
+		if (partition == null) {
+			throw new BusinessException();
+		}
+		return partition;
+	}
+
+	private RoomEngine getRoomPartition(String roomId) {
+		return partitions.get(getRoomPartitionIndex(roomId));
+	}
+
+	private int getRoomPartitionIndex(String roomId) {
+		Integer partition = partitionByRoom.get(roomId);
+		if (partition == null) {
+			throw new BusinessException();
+		}
+		return partition;
+	}
+
+	private RoomEngine getTokenPartition(String token) {
+		int separator = token.indexOf(TOKEN_SEPARATOR);
+		try {
+			return partitions.get(Integer.parseInt(token.substring(0, separator)));
+		} catch (RuntimeException e) {
+			throw new BusinessException();
+		}
+	}
+
+	private Room search(BookingRequest bookingRequest, int from, int to) {
+		Room best = null;
+		for (int partition = from; partition < to; partition++) {
+			best = better(best, partitions.get(partition).findAvailableRoom(bookingRequest));
+			if (best != null && best.getCapacity() == bookingRequest.getGuestCount()) {
+				break;
+			}
+		}
+		return best;
+	}
+
+	private static Room better(Room left, Room right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null || left.getCapacity() <= right.getCapacity()) {
+			return left;
+		}
+		return right;
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups payments into micro-batches that are settled in the ledger (and
+ * journal) in one go. A batch is flushed when it reaches its maximum size or
+ * when its oldest payment has waited for the maximum delay, whichever comes
+ * first. Every caller gets a future completed with its payment id. It is
+ * opt-in and not on the {@link BookingService} path: it suits callers that
+ * take many prepaid payments at once and can wait on a future for each.
+ */
+public class PaymentBatcher implements Closeable {
+
+	private static final int DEFAULT_BATCH_SIZE = 256;
+	private static final long DEFAULT_MAX_DELAY_MICROS = 500;
+
+	private static class Batch {
+
+		private final long[] ids;
+		private final long[] cents;
+		private final CompletableFuture<?>[] futures;
+		private int count;
+
+		Batch(int size) {
+			this.ids = new long[size];
+			this.cents = new long[size];
+			this.futures = new CompletableFuture<?>[size];
+		}
+	}
+
+	private final PaymentService paymentService;
+	private final int batchSize;
+	private final long maxDelayNanos;
+	private final ScheduledExecutorService flusher;
+	private Batch current;
+	private boolean closed;
+
+	public PaymentBatcher(PaymentService paymentService) {
+		this(paymentService, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MICROS, TimeUnit.MICROSECONDS);
+	}
+
+	public PaymentBatcher(PaymentService paymentService, int batchSize, long maxDelay, TimeUnit unit) {
+		this.paymentService = paymentService;
+		this.batchSize = batchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		this.flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "payment-batcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.current = new Batch(batchSize);
+	}
+
+	public CompletableFuture<String> pay(BookingRequest bookingRequest, double price) {
+		CompletableFuture<String> future = new CompletableFuture<>();
+		try {
+			paymentService.validate(bookingRequest, price);
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+		long id = paymentService.nextId();
+		Batch full = null;
+		synchronized (this) {
+			if (closed) {
+				future.completeExceptionally(new IllegalStateException("Payment batcher is closed"));
+				return future;
+			}
+			Batch batch = current;
+			batch.ids[batch.count] = id;
+			batch.cents[batch.count] = PaymentService.toCents(price);
+			batch.futures[batch.count] = future;
+			if (++batch.count == batchSize) {
+				full = batch;
+				current = new Batch(batchSize);
+			} else if (batch.count == 1) {
+				flusher.schedule(() -> flush(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+		if (full != null) {
+			settle(full);
+		}
+		return future;
+	}
+
+	public void flush() {
+		Batch batch;
+		synchronized (this) {
+			batch = current;
+			current = new Batch(batchSize);
+		}
+		settle(batch);
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		flusher.shutdownNow();
+		flush();
+	}
+
+	private void flush(Batch batch) {
+		synchronized (this) {
+			if (current != batch) {
+				return;
+			}
+			current = new Batch(batchSize);
+		}
+		settle(batch);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void settle(Batch batch) {
+		if (batch.count == 0) {
+			return;
+		}
+		try {
+			paymentService.recordAll(batch.ids, batch.cents, batch.count);
+			for (int i = 0; i < batch.count; i++) {
+				((CompletableFuture<String>) batch.futures[i]).complete(IdGenerator.format(batch.ids[i]));
+			}
+		} catch (RuntimeException e) {
+			for (int i = 0; i < batch.count; i++) {
+				batch.futures[i].completeExceptionally(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * Open-addressing hash map from payment id to amount in cents, stored in two
+ * parallel primitive arrays so that recording a payment allocates nothing.
+ * Id 0 marks an empty slot.
+ */
+public class PaymentLedger {
+
+	public interface EntryConsumer {
+		void accept(long id, long cents);
+	}
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private long[] ids;
+	private long[] cents;
+	private int size;
+
+	public PaymentLedger() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PaymentLedger(int expectedPayments) {
+		int capacity = Integer.highestOneBit(Math.max(expectedPayments * 2 - 1, 16)) << 1;
+		this.ids = new long[capacity];
+		this.cents = new long[capacity];
+	}
+
+	public synchronized void put(long id, long amountCents) {
+		if (id == 0) {
+			throw new IllegalArgumentException("Payment id 0 is reserved");
+		}
+		if ((size + 1) * 2 > ids.length) {
+			resize();
+		}
+		insert(id, amountCents);
+	}
+
+	public synchronized void putAll(long[] batchIds, long[] batchCents, int count) {
+		while ((size + count) * 2 > ids.length) {
+			resize();
+		}
+		for (int i = 0; i < count; i++) {
+			insert(batchIds[i], batchCents[i]);
+		}
+	}
+
+	public synchronized long get(long id, long missing) {
+		int mask = ids.length - 1;
+		for (int slot = slot(id, mask); ids[slot] != 0; slot = (slot + 1) & mask) {
+			if (ids[slot] == id) {
+				return cents[slot];
+			}
+		}
+		return missing;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized void forEach(EntryConsumer consumer) {
+		for (int slot = 0; slot < ids.length; slot++) {
+			if (ids[slot] != 0) {
+				consumer.accept(ids[slot], cents[slot]);
+			}
+		}
+	}
+
+	private void insert(long id, long amountCents) {
+		int mask = ids.length - 1;
+		int slot = slot(id, mask);
+		while (ids[slot] != 0 && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		if (ids[slot] == 0) {
+			size++;
+		}
+		ids[slot] = id;
+		cents[slot] = amountCents;
+	}
+
+	private void resize() {
+		long[] oldIds = ids;
+		long[] oldCents = cents;
+		ids = new long[oldIds.length * 2];
+		cents = new long[oldCents.length * 2];
+		size = 0;
+		for (int slot = 0; slot < oldIds.length; slot++) {
+			if (oldIds[slot] != 0) {
+				insert(oldIds[slot], oldCents[slot]);
+			}
+		}
+	}
+
+	private static int slot(long id, int mask) {
+		long hash = id * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+}
@@ -1,18 +1,110 @@
 package com.mockitotutorial.happyhotel.booking;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class PaymentService {
 
-	private final Map<String, Double> payments = new HashMap<>();
+	private static final long MISSING = Long.MIN_VALUE;
+
+	private final PaymentLedger ledger = new PaymentLedger();
+	private final Journal journal;
+	private final IdGenerator idGenerator;
+
+	public PaymentService() {
+		this(TimeOrderedIdGenerator.INSTANCE);
+	}
+
+	public PaymentService(IdGenerator idGenerator) {
+		this.journal = null;
+		this.idGenerator = idGenerator;
+	}
+
+	public PaymentService(Journal journal) {
+		this(journal, TimeOrderedIdGenerator.INSTANCE);
+	}
+
+	public PaymentService(Journal journal, IdGenerator idGenerator) {
+		this.journal = journal;
+		this.idGenerator = idGenerator;
+		journal.replay(this::replay);
+	}
 
 	public String pay(BookingRequest bookingRequest, double price) {
+		validate(bookingRequest, price);
+		return IdGenerator.format(record(nextId(), toCents(price)));
+	}
+
+	public String payAll(List<BookingRequest> bookingRequests, double price) {
+		int guestCount = 0;
+		for (BookingRequest bookingRequest : bookingRequests) {
+			guestCount += bookingRequest.getGuestCount();
+		}
+		if (price > 200.0 * bookingRequests.size() && guestCount < 3 * bookingRequests.size()) {
+			throw new UnsupportedOperationException("Only small payments are supported.");
+		}
+		return IdGenerator.format(record(nextId(), toCents(price)));
+	}
+
+	public void refund(String paymentId) {
+		record(IdGenerator.parse(paymentId), MISSING);
+	}
+
+	public Double getPayment(String id) {
+		long cents = ledger.get(IdGenerator.parse(id), MISSING);
+		return cents == MISSING ? null : cents / 100.0;
+	}
+
+	void validate(BookingRequest bookingRequest, double price) {
 		if (price > 200.0 && bookingRequest.getGuestCount() < 3) {
 			throw new UnsupportedOperationException("Only small payments are supported.");
 		}
-		String id = UUID.randomUUID().toString();
-		payments.put(id, price);
+	}
+
+	long nextId() {
+		return idGenerator.nextId();
+	}
+
+	void recordAll(long[] ids, long[] cents, int count) {
+		if (journal == null) {
+			ledger.putAll(ids, cents, count);
+		} else {
+			List<byte[]> records = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				records.add(encode(ids[i], cents[i]));
+			}
+			journal.appendAll(records, () -> ledger.putAll(ids, cents, count));
+			journal.compactIfDue(this::snapshot);
+		}
+	}
+
+	static long toCents(double price) {
+		return Math.round(price * 100);
+	}
+
+	private long record(long id, long cents) {
+		if (journal == null) {
+			ledger.put(id, cents);
+		} else {
+			journal.append(encode(id, cents), () -> ledger.put(id, cents));
+			journal.compactIfDue(this::snapshot);
+		}
 		return id;
 	}
 
+	private Iterable<byte[]> snapshot() {
+		List<byte[]> records = new ArrayList<>(ledger.size());
+		ledger.forEach((id, cents) -> records.add(encode(id, cents)));
+		return records;
+	}
+
+	private void replay(byte[] record) {
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		ledger.put(buffer.getLong(), buffer.getLong());
+	}
+
+	private static byte[] encode(long id, long cents) {
+		return ByteBuffer.allocate(2 * Long.BYTES).putLong(id).putLong(cents).array();
+	}
+
 }
@@ -0,0 +1,109 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Prices stays from a {@link RatePlan} compiled into primitive tables: a
+ * running total of nightly cents per guest indexed by epoch day, so the price
+ * of any stay inside the table is two array reads, and the guest tier
+ * percentages indexed by party size. Nights outside the table are charged the
+ * base rate.
+ * <p>
+ * {@link #update} compiles a new table and publishes it in one write, so a
+ * rate change needs no redeploy and a batch quote never mixes two plans.
+ * Quotes are converted in minor units with the {@link CurrencyConverter}.
+ */
+public class PricingEngine {
+
+	private static final double BASE_PRICE_USD = 50.0;
+
+	static class RateTable {
+
+		private final long firstNight;
+		private final long[] cumulativeCents;
+		private final long baseCents;
+		private final int[] guestTierPercent;
+
+		RateTable(long firstNight, long[] cumulativeCents, long baseCents, int[] guestTierPercent) {
+			this.firstNight = firstNight;
+			this.cumulativeCents = cumulativeCents;
+			this.baseCents = baseCents;
+			this.guestTierPercent = guestTierPercent;
+		}
+
+		long nightlyCents(long epochDay) {
+			long night = epochDay - firstNight;
+			if (night < 0 || night >= cumulativeCents.length - 1) {
+				return baseCents;
+			}
+			return cumulativeCents[(int) night + 1] - cumulativeCents[(int) night];
+		}
+
+		int tierPercent(int guestCount) {
+			return guestTierPercent[Math.min(Math.max(guestCount, 0), guestTierPercent.length - 1)];
+		}
+	}
+
+	private final CurrencyConverter currencyConverter;
+	private volatile RateTable table;
+
+	public PricingEngine() {
+		this(new RatePlan(BASE_PRICE_USD), LocalDate.now(), 0);
+	}
+
+	public PricingEngine(RatePlan ratePlan, LocalDate firstNight, int nights) {
+		this(ratePlan, firstNight, nights, CurrencyConverter.DEFAULT);
+	}
+
+	public PricingEngine(RatePlan ratePlan, LocalDate firstNight, int nights, CurrencyConverter currencyConverter) {
+		this.currencyConverter = currencyConverter;
+		update(ratePlan, firstNight, nights);
+	}
+
+	public void update(RatePlan ratePlan, LocalDate firstNight, int nights) {
+		long[] cumulativeCents = new long[nights + 1];
+		for (int night = 0; night < nights; night++) {
+			cumulativeCents[night + 1] = cumulativeCents[night]
+					+ Math.round(ratePlan.getNightlyRate(firstNight.plusDays(night)) * 100);
+		}
+		int[] guestTierPercent = new int[ratePlan.getLargestGuestTier() + 1];
+		for (int guests = 0; guests < guestTierPercent.length; guests++) {
+			guestTierPercent[guests] = ratePlan.getGuestTierPercent(guests);
+		}
+		table = new RateTable(firstNight.toEpochDay(), cumulativeCents, Math.round(ratePlan.getBaseRate() * 100),
+				guestTierPercent);
+	}
+
+	public double price(BookingRequest bookingRequest) {
+		return priceCents(table, bookingRequest) / 100.0;
+	}
+
+	public double[] quote(List<BookingRequest> bookingRequests, String currency) {
+		CurrencyConverter.Rates rates = currencyConverter.getRates();
+		int target = rates.indexOf(currency);
+		RateTable current = table;
+		double[] prices = new double[bookingRequests.size()];
+		for (int i = 0; i < prices.length; i++) {
+			prices[i] = rates.toMajorUnits(rates.convert(priceCents(current, bookingRequests.get(i)), target), target);
+		}
+		return prices;
+	}
+
+	RateTable getRateTable() {
+		return table;
+	}
+
+	private static long priceCents(RateTable table, BookingRequest bookingRequest) {
+		long from = bookingRequest.getDateFrom().toEpochDay() - table.firstNight;
+		long to = bookingRequest.getDateTo().toEpochDay() - table.firstNight;
+		int lastNight = table.cumulativeCents.length - 1;
+		int tableFrom = (int) Math.min(Math.max(from, 0), lastNight);
+		int tableTo = (int) Math.min(Math.max(to, tableFrom), lastNight);
+		long centsPerGuest = table.cumulativeCents[tableTo] - table.cumulativeCents[tableFrom]
+				+ (to - from - (tableTo - tableFrom)) * table.baseCents;
+		int guestCount = bookingRequest.getGuestCount();
+		return Math.floorDiv(centsPerGuest * guestCount * table.tierPercent(guestCount) + 50, 100);
+	}
+
+}
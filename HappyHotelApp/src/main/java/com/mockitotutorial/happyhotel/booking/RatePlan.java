@@ -0,0 +1,79 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Nightly rate per guest in USD: a base rate adjusted by seasons and weekend
+ * nights, and a discount or surcharge by party size. Percentages are of the
+ * undiscounted price, so 100 leaves it unchanged. When seasons overlap the one
+ * added last wins.
+ */
+public class RatePlan {
+
+	private static class Season {
+
+		private final long from;
+		private final long to;
+		private final int percent;
+
+		Season(LocalDate from, LocalDate to, int percent) {
+			this.from = from.toEpochDay();
+			this.to = to.toEpochDay();
+			this.percent = percent;
+		}
+	}
+
+	private final double baseRate;
+	private final List<Season> seasons = new ArrayList<>();
+	private final Set<DayOfWeek> weekendNights = EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY);
+	private final NavigableMap<Integer, Integer> guestTiers = new TreeMap<>();
+	private int weekendPercent = 100;
+
+	public RatePlan(double baseRate) {
+		this.baseRate = baseRate;
+		guestTiers.put(0, 100);
+	}
+
+	public void addSeason(LocalDate dateFrom, LocalDate dateTo, int percent) {
+		seasons.add(new Season(dateFrom, dateTo, percent));
+	}
+
+	public void setWeekendPercent(int weekendPercent) {
+		this.weekendPercent = weekendPercent;
+	}
+
+	public void setGuestTierPercent(int minGuests, int percent) {
+		guestTiers.put(minGuests, percent);
+	}
+
+	public double getBaseRate() {
+		return baseRate;
+	}
+
+	public double getNightlyRate(LocalDate night) {
+		double rate = baseRate;
+		long day = night.toEpochDay();
+		for (int i = seasons.size() - 1; i >= 0; i--) {
+			Season season = seasons.get(i);
+			if (day >= season.from && day < season.to) {
+				rate = rate * season.percent / 100;
+				break;
+			}
+		}
+		if (weekendNights.contains(night.getDayOfWeek())) {
+			rate = rate * weekendPercent / 100;
+		}
+		return rate;
+	}
+
+	public int getGuestTierPercent(int guestCount) {
+		return guestTiers.floorEntry(Math.max(guestCount, 0)).getValue();
+	}
+
+	int getLargestGuestTier() {
+		return guestTiers.lastKey();
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-room, per-night occupancy kept as one bitset row per room, indexed by
+ * epoch day relative to the first night of the calendar. Checking or changing
+ * a stay touches one word per 64 nights.
+ * <p>
+ * Words are claimed lock-free with compare-and-set in ascending order, so of
+ * two overlapping claims exactly one wins the first shared word and the loser
+ * rolls back the words it had already taken.
+ * <p>
+ * Nights before the first night have rolled out of the calendar: releasing a
+ * stay only clears its nights from the first night on.
+ */
+public class RoomCalendar {
+
+	private static final int NIGHTS_PER_WORD = 64;
+
+	private final long firstNight;
+	private final int nights;
+	private final int wordsPerRoom;
+	private final AtomicLongArray occupancy;
+
+	public RoomCalendar(int roomCount, LocalDate firstNight, int nights) {
+		this.firstNight = firstNight.toEpochDay();
+		this.nights = nights;
+		this.wordsPerRoom = (nights + NIGHTS_PER_WORD - 1) / NIGHTS_PER_WORD;
+		this.occupancy = new AtomicLongArray(roomCount * wordsPerRoom);
+	}
+
+	public boolean isFree(int room, LocalDate dateFrom, LocalDate dateTo) {
+		int from = night(dateFrom);
+		int to = endNight(from, dateTo);
+		int base = room * wordsPerRoom;
+		for (int word = from / NIGHTS_PER_WORD; word <= (to - 1) / NIGHTS_PER_WORD; word++) {
+			if ((occupancy.get(base + word) & mask(word, from, to)) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isOccupied(int room, LocalDate dateFrom, LocalDate dateTo) {
+		dateFrom = clip(dateFrom, dateTo);
+		if (dateFrom == null) {
+			return true;
+		}
+		int from = night(dateFrom);
+		int to = endNight(from, dateTo);
+		int base = room * wordsPerRoom;
+		for (int word = from / NIGHTS_PER_WORD; word <= (to - 1) / NIGHTS_PER_WORD; word++) {
+			long mask = mask(word, from, to);
+			if ((occupancy.get(base + word) & mask) != mask) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean tryOccupy(int room, LocalDate dateFrom, LocalDate dateTo) {
+		int from = night(dateFrom);
+		int to = endNight(from, dateTo);
+		int base = room * wordsPerRoom;
+		int lastWord = (to - 1) / NIGHTS_PER_WORD;
+		for (int word = from / NIGHTS_PER_WORD; word <= lastWord; word++) {
+			long mask = mask(word, from, to);
+			long current;
+			do {
+				current = occupancy.get(base + word);
+				if ((current & mask) != 0) {
+					clear(base, from, to, word);
+					return false;
+				}
+			} while (!occupancy.compareAndSet(base + word, current, current | mask));
+		}
+		return true;
+	}
+
+	public void occupy(int room, LocalDate dateFrom, LocalDate dateTo) {
+		if (!tryOccupy(room, dateFrom, dateTo)) {
+			throw new BusinessException();
+		}
+	}
+
+	public void release(int room, LocalDate dateFrom, LocalDate dateTo) {
+		dateFrom = clip(dateFrom, dateTo);
+		if (dateFrom == null) {
+			return;
+		}
+		int from = night(dateFrom);
+		int to = endNight(from, dateTo);
+		int base = room * wordsPerRoom;
+		int lastWord = (to - 1) / NIGHTS_PER_WORD;
+		for (int word = from / NIGHTS_PER_WORD; word <= lastWord; word++) {
+			long mask = mask(word, from, to);
+			long current;
+			do {
+				current = occupancy.get(base + word);
+				if ((current & mask) != mask) {
+					set(base, from, to, word);
+					throw new BusinessException();
+				}
+			} while (!occupancy.compareAndSet(base + word, current, current & ~mask));
+		}
+	}
+
+	void force(int room, long fromEpochDay, long toEpochDay, boolean occupied) {
+		long from = Math.max(fromEpochDay - firstNight, 0);
+		long to = Math.min(toEpochDay - firstNight, nights);
+		if (from < to) {
+			int lastWord = (int) (to - 1) / NIGHTS_PER_WORD;
+			if (occupied) {
+				set(room * wordsPerRoom, (int) from, (int) to, lastWord + 1);
+			} else {
+				clear(room * wordsPerRoom, (int) from, (int) to, lastWord + 1);
+			}
+		}
+	}
+
+	void loadRow(int room, long[] row, long rowFirstNight) {
+		long shift = firstNight - rowFirstNight;
+		int base = room * wordsPerRoom;
+		for (int word = 0; word < wordsPerRoom; word++) {
+			long bits = bitsAt(row, word * (long) NIGHTS_PER_WORD + shift);
+			occupancy.set(base + word, bits & mask(word, 0, nights));
+		}
+	}
+
+	void copyRow(int room, RoomCalendar source, int sourceRoom) {
+		long[] row = new long[source.wordsPerRoom];
+		for (int word = 0; word < row.length; word++) {
+			row[word] = source.getWord(sourceRoom, word);
+		}
+		loadRow(room, row, source.firstNight);
+	}
+
+	boolean hasOccupiedNights(int room) {
+		for (int word = 0; word < wordsPerRoom; word++) {
+			if (getWord(room, word) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	long getWord(int room, int word) {
+		return occupancy.get(room * wordsPerRoom + word);
+	}
+
+	int getWordsPerRoom() {
+		return wordsPerRoom;
+	}
+
+	public LocalDate getFirstNight() {
+		return LocalDate.ofEpochDay(firstNight);
+	}
+
+	public int getNights() {
+		return nights;
+	}
+
+	private LocalDate clip(LocalDate dateFrom, LocalDate dateTo) {
+		if (dateFrom.toEpochDay() >= firstNight || !dateFrom.isBefore(dateTo)) {
+			return dateFrom;
+		}
+		return dateTo.toEpochDay() > firstNight ? LocalDate.ofEpochDay(firstNight) : null;
+	}
+
+	private int night(LocalDate date) {
+		long night = date.toEpochDay() - firstNight;
+		if (night < 0 || night >= nights) {
+			throw new BusinessException();
+		}
+		return (int) night;
+	}
+
+	private int endNight(int from, LocalDate dateTo) {
+		long to = dateTo.toEpochDay() - firstNight;
+		if (to <= from || to > nights) {
+			throw new BusinessException();
+		}
+		return (int) to;
+	}
+
+	private void clear(int base, int from, int to, int untilWord) {
+		for (int word = from / NIGHTS_PER_WORD; word < untilWord; word++) {
+			long mask = mask(word, from, to);
+			long current;
+			do {
+				current = occupancy.get(base + word);
+			} while (!occupancy.compareAndSet(base + word, current, current & ~mask));
+		}
+	}
+
+	private void set(int base, int from, int to, int untilWord) {
+		for (int word = from / NIGHTS_PER_WORD; word < untilWord; word++) {
+			long mask = mask(word, from, to);
+			long current;
+			do {
+				current = occupancy.get(base + word);
+			} while (!occupancy.compareAndSet(base + word, current, current | mask));
+		}
+	}
+
+	private static long bitsAt(long[] row, long bit) {
+		long word = Math.floorDiv(bit, NIGHTS_PER_WORD);
+		int shift = (int) Math.floorMod(bit, NIGHTS_PER_WORD);
+		long low = word >= 0 && word < row.length ? row[(int) word] : 0;
+		long high = word + 1 >= 0 && word + 1 < row.length ? row[(int) word + 1] : 0;
+		return shift == 0 ? low : low >>> shift | high << (NIGHTS_PER_WORD - shift);
+	}
+
+	private static long mask(int word, int from, int to) {
+		int low = Math.max(from - word * NIGHTS_PER_WORD, 0);
+		int high = Math.min(to - word * NIGHTS_PER_WORD, NIGHTS_PER_WORD);
+		long upTo = high == NIGHTS_PER_WORD ? -1L : (1L << high) - 1;
+		return upTo & (-1L << low);
+	}
+
+}
@@ -0,0 +1,260 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable list of rooms, indexed the way {@link RoomService} lays out its
+ * calendar. A catalog is either built from rooms in memory or mapped from a
+ * binary catalog file written by {@link #write}:
+ *
+ * <pre>
+ * int magic, int room count, int id bytes
+ * int[count]     capacities
+ * int[count + 1] offsets of the UTF-8 ids
+ * int[count]     room indexes sorted by id bytes
+ * byte[]         UTF-8 ids
+ * </pre>
+ *
+ * Loading reads the capacities only; ids are decoded on first use and looked
+ * up by binary search over the sorted indexes, so no map is built.
+ */
+public abstract class RoomCatalog {
+
+	private static final int MAGIC = 0x48484331;
+	private static final int HEADER_BYTES = 12;
+
+	private static class InMemory extends RoomCatalog {
+
+		private final List<Room> rooms;
+		private final Map<String, Integer> roomIndex;
+
+		InMemory(List<Room> rooms, Map<String, Integer> roomIndex) {
+			super(rooms.stream().mapToInt(Room::getCapacity).toArray());
+			this.rooms = rooms;
+			this.roomIndex = roomIndex;
+		}
+
+		@Override
+		public Room get(int index) {
+			return rooms.get(index);
+		}
+
+		@Override
+		public String getId(int index) {
+			return rooms.get(index).getId();
+		}
+
+		@Override
+		public int indexOf(String roomId) {
+			Integer index = roomIndex.get(roomId);
+			return index == null ? -1 : index;
+		}
+	}
+
+	private static class Mapped extends RoomCatalog {
+
+		private final IntBuffer offsets;
+		private final IntBuffer byId;
+		private final ByteBuffer ids;
+		private final String[] decoded;
+
+		Mapped(int[] capacities, IntBuffer offsets, IntBuffer byId, ByteBuffer ids) {
+			super(capacities);
+			this.offsets = offsets;
+			this.byId = byId;
+			this.ids = ids;
+			this.decoded = new String[capacities.length];
+		}
+
+		@Override
+		public String getId(int index) {
+			String id = decoded[index];
+			if (id == null) {
+				byte[] bytes = new byte[offsets.get(index + 1) - offsets.get(index)];
+				((ByteBuffer) ids.duplicate().position(offsets.get(index))).get(bytes);
+				id = new String(bytes, StandardCharsets.UTF_8);
+				decoded[index] = id;
+			}
+			return id;
+		}
+
+		@Override
+		public int indexOf(String roomId) {
+			byte[] key = roomId.getBytes(StandardCharsets.UTF_8);
+			int low = 0;
+			int high = byId.limit() - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int index = byId.get(middle);
+				int comparison = compare(offsets.get(index), offsets.get(index + 1), key);
+				if (comparison < 0) {
+					low = middle + 1;
+				} else if (comparison > 0) {
+					high = middle - 1;
+				} else {
+					return index;
+				}
+			}
+			return -1;
+		}
+
+		private int compare(int from, int to, byte[] key) {
+			int length = Math.min(to - from, key.length);
+			for (int i = 0; i < length; i++) {
+				int comparison = Integer.compare(ids.get(from + i) & 0xff, key[i] & 0xff);
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+			return Integer.compare(to - from, key.length);
+		}
+	}
+
+	private final int[] roomCapacities;
+	private final int[] capacities;
+	private final int[][] roomsByClass;
+
+	private RoomCatalog(int[] roomCapacities) {
+		this.roomCapacities = roomCapacities;
+		this.capacities = Arrays.stream(roomCapacities).distinct().sorted().toArray();
+		int[] classSizes = new int[capacities.length];
+		for (int capacity : roomCapacities) {
+			classSizes[Arrays.binarySearch(capacities, capacity)]++;
+		}
+		this.roomsByClass = new int[capacities.length][];
+		for (int capacityClass = 0; capacityClass < capacities.length; capacityClass++) {
+			roomsByClass[capacityClass] = new int[classSizes[capacityClass]];
+			classSizes[capacityClass] = 0;
+		}
+		for (int index = 0; index < roomCapacities.length; index++) {
+			int capacityClass = Arrays.binarySearch(capacities, roomCapacities[index]);
+			roomsByClass[capacityClass][classSizes[capacityClass]++] = index;
+		}
+	}
+
+	public static RoomCatalog of(Collection<Room> rooms) {
+		List<Room> list = Collections.unmodifiableList(new ArrayList<>(rooms));
+		Map<String, Integer> roomIndex = new HashMap<>();
+		for (int index = 0; index < list.size(); index++) {
+			if (roomIndex.put(list.get(index).getId(), index) != null) {
+				throw new IllegalArgumentException("Duplicate room id: " + list.get(index).getId());
+			}
+		}
+		return new InMemory(list, roomIndex);
+	}
+
+	public static RoomCatalog load(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int count = buffer.remaining() >= HEADER_BYTES ? buffer.getInt(4) : -1;
+			if (count < 0 || buffer.getInt(0) != MAGIC
+					|| buffer.remaining() != HEADER_BYTES + (3L * count + 1) * Integer.BYTES + buffer.getInt(8)) {
+				throw new IllegalArgumentException("Not a room catalog: " + file);
+			}
+			int[] roomCapacities = new int[count];
+			((ByteBuffer) buffer.position(HEADER_BYTES)).asIntBuffer().get(roomCapacities);
+			IntBuffer offsets = slice(buffer, HEADER_BYTES + count * Integer.BYTES, (count + 1) * Integer.BYTES)
+					.asIntBuffer();
+			IntBuffer byId = slice(buffer, HEADER_BYTES + (2 * count + 1) * Integer.BYTES, count * Integer.BYTES)
+					.asIntBuffer();
+			ByteBuffer ids = slice(buffer, HEADER_BYTES + (3 * count + 1) * Integer.BYTES, buffer.getInt(8));
+			return new Mapped(roomCapacities, offsets, byId, ids);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static void write(Path file, Collection<Room> rooms) {
+		List<Room> list = new ArrayList<>(rooms);
+		byte[][] ids = new byte[list.size()][];
+		int idBytes = 0;
+		for (int index = 0; index < ids.length; index++) {
+			ids[index] = list.get(index).getId().getBytes(StandardCharsets.UTF_8);
+			idBytes += ids[index].length;
+		}
+		Integer[] byId = new Integer[ids.length];
+		for (int index = 0; index < byId.length; index++) {
+			byId[index] = index;
+		}
+		Arrays.sort(byId, (left, right) -> compare(ids[left], ids[right]));
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (3 * ids.length + 1) * Integer.BYTES + idBytes)
+				.putInt(MAGIC).putInt(ids.length).putInt(idBytes);
+		for (Room room : list) {
+			buffer.putInt(room.getCapacity());
+		}
+		int offset = 0;
+		for (byte[] id : ids) {
+			buffer.putInt(offset);
+			offset += id.length;
+		}
+		buffer.putInt(offset);
+		for (int i = 0; i < byId.length; i++) {
+			if (i > 0 && compare(ids[byId[i - 1]], ids[byId[i]]) == 0) {
+				throw new IllegalArgumentException("Duplicate room id: " + list.get(byId[i]).getId());
+			}
+			buffer.putInt(byId[i]);
+		}
+		for (byte[] id : ids) {
+			buffer.put(id);
+		}
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			Files.write(temporary, buffer.array());
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public int size() {
+		return roomCapacities.length;
+	}
+
+	public Room get(int index) {
+		return new Room(getId(index), getCapacity(index));
+	}
+
+	public abstract String getId(int index);
+
+	public int getCapacity(int index) {
+		return roomCapacities[index];
+	}
+
+	public abstract int indexOf(String roomId);
+
+	int[] getCapacities() {
+		return capacities;
+	}
+
+	int[] getRoomsOfClass(int capacityClass) {
+		return roomsByClass[capacityClass];
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int from, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(from).limit(from + length);
+		return slice.slice();
+	}
+
+	private static int compare(byte[] left, byte[] right) {
+		int length = Math.min(left.length, right.length);
+		for (int i = 0; i < length; i++) {
+			int comparison = Integer.compare(left[i] & 0xff, right[i] & 0xff);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return Integer.compare(left.length, right.length);
+	}
+
+}
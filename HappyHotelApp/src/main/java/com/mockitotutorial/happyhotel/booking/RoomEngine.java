@@ -0,0 +1,63 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Room inventory as {@link BookingService} sees it. {@link RoomService} keeps
+ * the calendar itself; {@link SingleWriterRoomService} and
+ * {@link PartitionedRoomService} are built over room services and hand every
+ * call to them. Methods without dates act on tonight.
+ */
+public interface RoomEngine extends Closeable {
+
+	String findAvailableRoomId(BookingRequest bookingRequest);
+
+	String tryFindAvailableRoom(BookingRequest bookingRequest);
+
+	Room findAvailableRoom(BookingRequest bookingRequest);
+
+	String claimAvailableRoom(BookingRequest bookingRequest);
+
+	String tryClaimAvailableRoom(BookingRequest bookingRequest);
+
+	String[] claimAvailableRooms(List<BookingRequest> bookingRequests);
+
+	boolean isRoomAvailable(String roomId, LocalDate dateFrom, LocalDate dateTo);
+
+	List<Room> getAvailableRooms();
+
+	int getAvailablePlaceCount();
+
+	int getAvailablePlaceCount(int capacity);
+
+	int getRoomCount();
+
+	AllocationPolicy getAllocationPolicy();
+
+	void bookRoom(String roomId);
+
+	void bookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo);
+
+	boolean tryBookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo);
+
+	void unbookRoom(String roomId);
+
+	void unbookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo);
+
+	String hold(String roomId, Duration ttl);
+
+	String hold(String roomId, LocalDate dateFrom, LocalDate dateTo, Duration ttl);
+
+	void confirm(String token);
+
+	void release(String token);
+
+	int getHoldCount();
+
+	@Override
+	void close();
+
+}
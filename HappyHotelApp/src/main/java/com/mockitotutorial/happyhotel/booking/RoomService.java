@@ -1,58 +1,786 @@
 package com.mockitotutorial.happyhotel.booking;
 
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-public class RoomService {
+public class RoomService implements RoomEngine {
 
-	private final Map<Room, Boolean> roomAvailability;
-	{
-		roomAvailability = new HashMap<>();
-		roomAvailability.put(new Room("1.1", 2), true);
-		roomAvailability.put(new Room("1.2", 2), true);
-		roomAvailability.put(new Room("1.3", 5), true);
-		roomAvailability.put(new Room("2.1", 3), true);
-		roomAvailability.put(new Room("2.2", 4), true);
+	private static final int DEFAULT_CALENDAR_NIGHTS = 2 * 366;
+	private static final long HOLD_TICK_MILLIS = 10;
+	private static final int HOLD_WHEEL_TICKS = 512;
+	private static final int SNAPSHOT_CHUNK_WORDS = 8192;
+	private static final int RELOAD_SPINS = 100;
+
+	private static final byte OCCUPY = 1;
+	private static final byte RELEASE = 2;
+	private static final byte HOLD = 3;
+	private static final byte CONFIRM = 4;
+	private static final byte RELEASE_HOLD = 5;
+	private static final byte SNAPSHOT_HEADER = 6;
+	private static final byte SNAPSHOT_ROWS = 7;
+
+	private static class Hold {
+
+		private final int index;
+		private final LocalDate dateFrom;
+		private final LocalDate dateTo;
+		private final long deadlineMillis;
+
+		Hold(int index, LocalDate dateFrom, LocalDate dateTo, long deadlineMillis) {
+			this.index = index;
+			this.dateFrom = dateFrom;
+			this.dateTo = dateTo;
+			this.deadlineMillis = deadlineMillis;
+		}
+	}
+
+	/**
+	 * A catalog with the calendar and free place counts laid out for it.
+	 * {@link #reload} builds a new one and swaps it in whole. Mutations count
+	 * themselves in and out of the room they change and re-check the seal
+	 * after counting in, so a reload that has sealed the inventory only has
+	 * to wait for each room's count to drop to zero; no lock word is shared
+	 * between rooms. Rolling the calendar forward is a reload of the same
+	 * catalog onto a later first night.
+	 */
+	private static class Inventory {
+
+		private final RoomCatalog catalog;
+		private final long firstNight;
+		private final RoomCalendar calendar;
+		private final AtomicIntegerArray freePlaces;
+		private final AtomicIntegerArray freePlacesByCapacity;
+		private final AtomicIntegerArray writers;
+		private volatile boolean sealed;
+
+		Inventory(RoomCatalog catalog, LocalDate firstNight, int nights) {
+			this.catalog = catalog;
+			this.firstNight = firstNight.toEpochDay();
+			this.calendar = new RoomCalendar(catalog.size(), firstNight, nights);
+			int[] capacities = catalog.getCapacities();
+			this.freePlaces = new AtomicIntegerArray(nights);
+			this.freePlacesByCapacity = new AtomicIntegerArray(capacities.length * nights);
+			this.writers = new AtomicIntegerArray(catalog.size());
+			for (int capacityClass = 0; capacityClass < capacities.length; capacityClass++) {
+				int places = capacities[capacityClass] * catalog.getRoomsOfClass(capacityClass).length;
+				int base = capacityClass * nights;
+				for (int night = 0; night < nights; night++) {
+					freePlaces.addAndGet(night, places);
+					freePlacesByCapacity.set(base + night, places);
+				}
+			}
+		}
+
+		boolean enter(int index) {
+			if (index >= writers.length()) {
+				// a hold already remapped by a later reload
+				return false;
+			}
+			writers.incrementAndGet(index);
+			if (sealed) {
+				writers.decrementAndGet(index);
+				return false;
+			}
+			return true;
+		}
+
+		void exit(int index) {
+			writers.decrementAndGet(index);
+		}
+
+		void awaitWriters() {
+			for (int index = 0; index < writers.length(); index++) {
+				while (writers.get(index) != 0) {
+					Thread.yield();
+				}
+			}
+		}
+
+		void countOccupiedPlaces() {
+			int nights = calendar.getNights();
+			int[] capacities = catalog.getCapacities();
+			int[] occupiedPlaces = new int[capacities.length * nights];
+			for (int capacityClass = 0; capacityClass < capacities.length; capacityClass++) {
+				int base = capacityClass * nights;
+				int capacity = capacities[capacityClass];
+				for (int index : catalog.getRoomsOfClass(capacityClass)) {
+					for (int word = 0; word < calendar.getWordsPerRoom(); word++) {
+						for (long bits = calendar.getWord(index, word); bits != 0; bits &= bits - 1) {
+							occupiedPlaces[base + word * Long.SIZE + Long.numberOfTrailingZeros(bits)] += capacity;
+						}
+					}
+				}
+				for (int night = 0; night < nights; night++) {
+					freePlaces.addAndGet(night, -occupiedPlaces[base + night]);
+					freePlacesByCapacity.addAndGet(base + night, -occupiedPlaces[base + night]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the calendar and the holds from a journal: the snapshot's rows
+	 * first, shifted to this calendar's first night, then the events logged
+	 * since. Events only set or clear occupancy, clipped to the calendar, and
+	 * the free place counts are recomputed from the calendar at the end.
+	 */
+	private class Recovery implements Consumer<byte[]> {
+
+		private long snapshotFirstNight;
+		private long[] row;
+
+		@Override
+		public void accept(byte[] record) {
+			ByteBuffer buffer = ByteBuffer.wrap(record);
+			byte type = buffer.get();
+			switch (type) {
+			case SNAPSHOT_HEADER:
+				snapshotFirstNight = buffer.getInt();
+				int roomCount = buffer.getInt();
+				if (roomCount != inventory.catalog.size()) {
+					throw new IllegalStateException(
+							"Journal holds " + roomCount + " rooms, expected " + inventory.catalog.size());
+				}
+				row = new long[buffer.getInt()];
+				break;
+			case SNAPSHOT_ROWS:
+				for (int index = buffer.getInt(); buffer.hasRemaining(); index++) {
+					for (int word = 0; word < row.length; word++) {
+						row[word] = buffer.getLong();
+					}
+					inventory.calendar.loadRow(index, row, snapshotFirstNight);
+				}
+				break;
+			case OCCUPY:
+			case RELEASE:
+				int index = buffer.getInt();
+				long dateFrom = buffer.getInt();
+				inventory.calendar.force(index, dateFrom, dateFrom + buffer.getInt(), type == OCCUPY);
+				break;
+			case HOLD:
+			case RELEASE_HOLD:
+				String token = IdGenerator.format(buffer.getLong());
+				int holdIndex = buffer.getInt();
+				LocalDate holdFrom = LocalDate.ofEpochDay(buffer.getInt());
+				LocalDate holdTo = holdFrom.plusDays(buffer.getInt());
+				inventory.calendar.force(holdIndex, holdFrom.toEpochDay(), holdTo.toEpochDay(), type == HOLD);
+				if (type == HOLD) {
+					holds.put(token, new Hold(holdIndex, holdFrom, holdTo, buffer.getLong()));
+				} else {
+					holds.remove(token);
+				}
+				break;
+			case CONFIRM:
+				holds.remove(IdGenerator.format(buffer.getLong()));
+				break;
+			default:
+				throw new IllegalStateException("Unknown room event " + type);
+			}
+		}
+	}
+
+	private final Clock clock;
+	private final AllocationPolicy allocationPolicy;
+	private final Journal journal;
+	private final ConcurrentMap<String, Hold> holds = new ConcurrentHashMap<>();
+	private final TimingWheel<String> holdExpiry = new TimingWheel<>(HOLD_TICK_MILLIS, TimeUnit.MILLISECONDS,
+			HOLD_WHEEL_TICKS, this::expire);
+
+	private volatile Inventory inventory;
+	private volatile long rollAtMillis;
+
+	public RoomService() {
+		this(Arrays.asList(
+				new Room("1.1", 2),
+				new Room("1.2", 2),
+				new Room("1.3", 5),
+				new Room("2.1", 3),
+				new Room("2.2", 4)), Clock.systemDefaultZone());
+	}
+
+	public RoomService(Collection<Room> rooms, Clock clock) {
+		this(rooms, clock, DEFAULT_CALENDAR_NIGHTS);
+	}
+
+	public RoomService(Collection<Room> rooms, Clock clock, AllocationPolicy allocationPolicy) {
+		this(rooms, clock, DEFAULT_CALENDAR_NIGHTS, allocationPolicy);
+	}
+
+	public RoomService(Collection<Room> rooms, Clock clock, int calendarNights) {
+		this(rooms, clock, calendarNights, AllocationPolicy.BEST_FIT);
+	}
+
+	public RoomService(Collection<Room> rooms, Clock clock, int calendarNights, AllocationPolicy allocationPolicy) {
+		this(rooms, clock, calendarNights, allocationPolicy, null);
+	}
+
+	public RoomService(Collection<Room> rooms, Clock clock, int calendarNights, Journal journal) {
+		this(rooms, clock, calendarNights, AllocationPolicy.BEST_FIT, journal);
+	}
+
+	public RoomService(Collection<Room> rooms, Clock clock, int calendarNights, AllocationPolicy allocationPolicy,
+			Journal journal) {
+		this(RoomCatalog.of(rooms), clock, calendarNights, allocationPolicy, journal);
+	}
+
+	public RoomService(RoomCatalog catalog, Clock clock) {
+		this(catalog, clock, DEFAULT_CALENDAR_NIGHTS, AllocationPolicy.BEST_FIT, null);
+	}
+
+	public RoomService(RoomCatalog catalog, Clock clock, int calendarNights, AllocationPolicy allocationPolicy,
+			Journal journal) {
+		this.clock = clock;
+		this.allocationPolicy = allocationPolicy;
+		this.journal = journal;
+		this.inventory = new Inventory(catalog, LocalDate.now(clock), calendarNights);
+		if (journal != null) {
+			recover();
+		}
+		this.rollAtMillis = rollAt(inventory);
 	}
 
 	public String findAvailableRoomId(BookingRequest bookingRequest) {
-		return roomAvailability.entrySet().stream()
-				.filter(entry -> entry.getValue()).map(entry -> entry.getKey())
-				.filter(room -> room.getCapacity() == bookingRequest.getGuestCount())
-				.findFirst()
-				.map(room -> room.getId())
-				.orElseThrow(BusinessException::new);
-	}
-	
+		String roomId = tryFindAvailableRoom(bookingRequest);
+		if (roomId == null) {
+			throw BusinessException.NO_ROOM;
+		}
+		return roomId;
+	}
+
+	public String tryFindAvailableRoom(BookingRequest bookingRequest) {
+		Room room = findAvailableRoom(bookingRequest);
+		return room == null ? null : room.getId();
+	}
+
+	public Room findAvailableRoom(BookingRequest bookingRequest) {
+		Inventory inventory = inventory();
+		if (!isInWindow(inventory, bookingRequest.getDateFrom(), bookingRequest.getDateTo())) {
+			return null;
+		}
+		int guestCount = bookingRequest.getGuestCount();
+		int end = endCandidate(inventory, guestCount);
+		for (int capacityClass = firstCandidate(inventory, guestCount); capacityClass < end; capacityClass++) {
+			if (hasFreePlaces(inventory, capacityClass, bookingRequest.getDateFrom(), bookingRequest.getDateTo())) {
+				for (int index : inventory.catalog.getRoomsOfClass(capacityClass)) {
+					if (inventory.calendar.isFree(index, bookingRequest.getDateFrom(), bookingRequest.getDateTo())) {
+						return inventory.catalog.get(index);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	public String claimAvailableRoom(BookingRequest bookingRequest) {
+		String roomId = tryClaimAvailableRoom(bookingRequest);
+		if (roomId == null) {
+			throw BusinessException.NO_ROOM;
+		}
+		return roomId;
+	}
+
+	public String tryClaimAvailableRoom(BookingRequest bookingRequest) {
+		int guestCount = bookingRequest.getGuestCount();
+		while (true) {
+			Inventory inventory = inventory();
+			if (!isInWindow(inventory, bookingRequest.getDateFrom(), bookingRequest.getDateTo())) {
+				return null;
+			}
+			int end = endCandidate(inventory, guestCount);
+			for (int capacityClass = firstCandidate(inventory, guestCount); capacityClass < end; capacityClass++) {
+				if (hasFreePlaces(inventory, capacityClass, bookingRequest.getDateFrom(), bookingRequest.getDateTo())) {
+					for (int index : inventory.catalog.getRoomsOfClass(capacityClass)) {
+						if (inventory.calendar.isFree(index, bookingRequest.getDateFrom(), bookingRequest.getDateTo())
+								&& tryOccupy(inventory, index, bookingRequest.getDateFrom(),
+										bookingRequest.getDateTo())) {
+							return inventory.catalog.getId(index);
+						}
+					}
+				}
+			}
+			if (!inventory.sealed) {
+				return null;
+			}
+			awaitReload(inventory);
+		}
+	}
+
+	public String[] claimAvailableRooms(List<BookingRequest> bookingRequests) {
+		String[] roomIds = new String[bookingRequests.size()];
+		NavigableMap<Integer, List<Integer>> pendingByGuestCount = new TreeMap<>();
+		Inventory window = inventory();
+		for (int i = 0; i < bookingRequests.size(); i++) {
+			if (!isInWindow(window, bookingRequests.get(i).getDateFrom(), bookingRequests.get(i).getDateTo())) {
+				continue;
+			}
+			pendingByGuestCount.computeIfAbsent(bookingRequests.get(i).getGuestCount(), guests -> new LinkedList<>())
+					.add(i);
+		}
+		while (true) {
+			Inventory inventory = inventory();
+			for (Map.Entry<Integer, List<Integer>> pendingEntry : pendingByGuestCount.entrySet()) {
+				List<Integer> pending = pendingEntry.getValue();
+				int guestCount = pendingEntry.getKey();
+				int end = endCandidate(inventory, guestCount);
+				for (int capacityClass = firstCandidate(inventory, guestCount); capacityClass < end; capacityClass++) {
+					int[] candidates = inventory.catalog.getRoomsOfClass(capacityClass);
+					for (int c = 0; c < candidates.length && !pending.isEmpty(); c++) {
+						for (Iterator<Integer> iterator = pending.iterator(); iterator.hasNext();) {
+							int request = iterator.next();
+							BookingRequest bookingRequest = bookingRequests.get(request);
+							if (inventory.calendar.isFree(candidates[c], bookingRequest.getDateFrom(),
+									bookingRequest.getDateTo())
+									&& tryOccupy(inventory, candidates[c], bookingRequest.getDateFrom(),
+											bookingRequest.getDateTo())) {
+								roomIds[request] = inventory.catalog.getId(candidates[c]);
+								iterator.remove();
+							}
+						}
+					}
+				}
+			}
+			if (!inventory.sealed) {
+				return roomIds;
+			}
+			awaitReload(inventory);
+		}
+	}
+
+	/**
+	 * Swaps in a new catalog while bookings go on. The new calendar and the
+	 * mapping of room ids are prepared first. The current inventory is then
+	 * sealed: mutations already counted into a room finish, new ones wait for
+	 * the swap and retry on the new inventory. Once every room is quiet, the
+	 * rows of the rooms kept are copied across and, with a journal, it is
+	 * compacted so that its room indexes follow the new catalog. Rooms left
+	 * out of the catalog must have no bookings or holds.
+	 */
+	public synchronized void reload(RoomCatalog catalog) {
+		Inventory current = inventory;
+		Inventory next = new Inventory(catalog, current.calendar.getFirstNight(), current.calendar.getNights());
+		int[] nextIndexes = new int[current.catalog.size()];
+		Arrays.fill(nextIndexes, -1);
+		for (int index = 0; index < catalog.size(); index++) {
+			int previous = current.catalog.indexOf(catalog.getId(index));
+			if (previous >= 0) {
+				nextIndexes[previous] = index;
+			}
+		}
+		replace(current, next, nextIndexes);
+	}
+
+	private synchronized void roll() {
+		if (clock.millis() < rollAtMillis) {
+			return;
+		}
+		Inventory current = inventory;
+		Inventory next = new Inventory(current.catalog, LocalDate.now(clock), current.calendar.getNights());
+		replace(current, next, IntStream.range(0, current.catalog.size()).toArray());
+	}
+
+	private void replace(Inventory current, Inventory next, int[] nextIndexes) {
+		current.sealed = true;
+		try {
+			current.awaitWriters();
+			for (int previous = 0; previous < nextIndexes.length; previous++) {
+				if (nextIndexes[previous] < 0 && current.calendar.hasOccupiedNights(previous)) {
+					throw new IllegalStateException("Room " + current.catalog.getId(previous) + " is still booked");
+				}
+			}
+			for (int previous = 0; previous < nextIndexes.length; previous++) {
+				if (nextIndexes[previous] >= 0) {
+					next.calendar.copyRow(nextIndexes[previous], current.calendar, previous);
+				}
+			}
+			next.countOccupiedPlaces();
+			holds.replaceAll((token, hold) -> new Hold(nextIndexes[hold.index], hold.dateFrom, hold.dateTo,
+					hold.deadlineMillis));
+			if (journal != null) {
+				journal.compact(() -> snapshot(next));
+			}
+			inventory = next;
+			rollAtMillis = rollAt(next);
+		} finally {
+			if (inventory != next) {
+				current.sealed = false;
+			}
+		}
+	}
+
+	public AllocationPolicy getAllocationPolicy() {
+		return allocationPolicy;
+	}
+
+	Clock getClock() {
+		return clock;
+	}
+
+	public boolean isRoomAvailable(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		Inventory inventory = inventory();
+		return inventory.calendar.isFree(getRoomIndex(inventory, roomId), dateFrom, dateTo);
+	}
+
 	public List<Room> getAvailableRooms() {
-		return roomAvailability.entrySet().stream()
-				.filter(entry -> entry.getValue())
-				.map(entry -> entry.getKey())
-				.collect(Collectors.toList());
+		Inventory inventory = inventory();
+		LocalDate tonight = LocalDate.now(clock);
+		List<Room> availableRooms = new ArrayList<>();
+		for (int index = 0; index < inventory.catalog.size(); index++) {
+			if (inventory.calendar.isFree(index, tonight, tonight.plusDays(1))) {
+				availableRooms.add(inventory.catalog.get(index));
+			}
+		}
+		return availableRooms;
+	}
+
+	public int getAvailablePlaceCount() {
+		Inventory inventory = inventory();
+		return inventory.freePlaces.get(tonight(inventory));
+	}
+
+	public int getAvailablePlaceCount(int capacity) {
+		Inventory inventory = inventory();
+		int capacityClass = Arrays.binarySearch(inventory.catalog.getCapacities(), capacity);
+		if (capacityClass < 0) {
+			return 0;
+		}
+		return inventory.freePlacesByCapacity.get(capacityClass * inventory.calendar.getNights() + tonight(inventory));
 	}
-	
+
 	public int getRoomCount() {
-		return roomAvailability.size();
+		return inventory.catalog.size();
 	}
 
 	public void bookRoom(String roomId) {
-		Room room = roomAvailability.entrySet().stream()
-			.filter(entry -> entry.getKey().getId().equals(roomId) && entry.getValue())
-			.findFirst()
-			.map(entry -> entry.getKey())
-			.orElseThrow(BusinessException::new);
-		
-		roomAvailability.put(room, true);		
-	}
-	
+		LocalDate tonight = LocalDate.now(clock);
+		bookRoom(roomId, tonight, tonight.plusDays(1));
+	}
+
+	public void bookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		if (!tryBookRoom(roomId, dateFrom, dateTo)) {
+			throw new BusinessException();
+		}
+	}
+
+	public boolean tryBookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		while (true) {
+			Inventory inventory = inventory();
+			if (tryOccupy(inventory, getRoomIndex(inventory, roomId), dateFrom, dateTo)) {
+				return true;
+			}
+			if (!inventory.sealed) {
+				return false;
+			}
+			awaitReload(inventory);
+		}
+	}
+
 	public void unbookRoom(String roomId) {
-		Room room = roomAvailability.entrySet().stream()
-			.filter(entry -> entry.getKey().getId().equals(roomId) && !entry.getValue())
-			.findFirst()
-			.map(entry -> entry.getKey())
-			.orElseThrow(BusinessException::new);
-		
-		roomAvailability.put(room, false);		
-	}
-	
+		LocalDate tonight = LocalDate.now(clock);
+		unbookRoom(roomId, tonight, tonight.plusDays(1));
+	}
+
+	public void unbookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		Inventory inventory = inventory();
+		while (!release(inventory, getRoomIndex(inventory, roomId), dateFrom, dateTo)) {
+			awaitReload(inventory);
+			inventory = inventory();
+		}
+	}
+
+	public String hold(String roomId, Duration ttl) {
+		LocalDate tonight = LocalDate.now(clock);
+		return hold(roomId, tonight, tonight.plusDays(1), ttl);
+	}
+
+	public String hold(String roomId, LocalDate dateFrom, LocalDate dateTo, Duration ttl) {
+		long id = TimeOrderedIdGenerator.INSTANCE.nextId();
+		String token = IdGenerator.format(id);
+		while (true) {
+			Inventory inventory = inventory();
+			int index = getRoomIndex(inventory, roomId);
+			if (inventory.enter(index)) {
+				try {
+					Hold hold = new Hold(index, dateFrom, dateTo, clock.millis() + ttl.toMillis());
+					if (!journaled(() -> encode(HOLD, id, hold), () -> occupy(inventory, index, dateFrom, dateTo),
+							() -> holds.put(token, hold))) {
+						throw new BusinessException();
+					}
+				} finally {
+					inventory.exit(index);
+				}
+				holdExpiry.schedule(token, ttl.toNanos(), TimeUnit.NANOSECONDS);
+				return token;
+			}
+			awaitReload(inventory);
+		}
+	}
+
+	public void confirm(String token) {
+		while (true) {
+			Inventory inventory = inventory();
+			Hold hold = holds.get(token);
+			if (hold == null) {
+				throw new BusinessException();
+			}
+			if (inventory.enter(hold.index)) {
+				try {
+					if (!journaled(() -> ByteBuffer.allocate(9).put(CONFIRM).putLong(IdGenerator.parse(token)).array(),
+							() -> holds.remove(token, hold), () -> {
+							})) {
+						throw new BusinessException();
+					}
+					return;
+				} finally {
+					inventory.exit(hold.index);
+				}
+			}
+			awaitReload(inventory);
+		}
+	}
+
+	public void release(String token) {
+		if (!releaseHold(token)) {
+			throw new BusinessException();
+		}
+	}
+
+	public int getHoldCount() {
+		return holds.size();
+	}
+
+	@Override
+	public void close() {
+		holdExpiry.close();
+	}
+
+	private void expire(String token) {
+		releaseHold(token);
+	}
+
+	private boolean releaseHold(String token) {
+		while (true) {
+			Inventory inventory = inventory();
+			Hold hold = holds.get(token);
+			if (hold == null) {
+				return false;
+			}
+			if (inventory.enter(hold.index)) {
+				try {
+					return journaled(() -> encode(RELEASE_HOLD, IdGenerator.parse(token), hold),
+							() -> holds.remove(token, hold),
+							() -> free(inventory, hold.index, hold.dateFrom, hold.dateTo));
+				} finally {
+					inventory.exit(hold.index);
+				}
+			}
+			awaitReload(inventory);
+		}
+	}
+
+	private boolean release(Inventory inventory, int index, LocalDate dateFrom, LocalDate dateTo) {
+		if (!inventory.enter(index)) {
+			return false;
+		}
+		try {
+			if (journal == null) {
+				free(inventory, index, dateFrom, dateTo);
+			} else if (!journaled(() -> encode(RELEASE, index, dateFrom, dateTo),
+					() -> inventory.calendar.isOccupied(index, dateFrom, dateTo),
+					() -> free(inventory, index, dateFrom, dateTo))) {
+				throw new BusinessException();
+			}
+			return true;
+		} finally {
+			inventory.exit(index);
+		}
+	}
+
+	private void free(Inventory inventory, int index, LocalDate dateFrom, LocalDate dateTo) {
+		inventory.calendar.release(index, dateFrom, dateTo);
+		addFreePlaces(inventory, index, dateFrom, dateTo, 1);
+	}
+
+	private int firstCandidate(Inventory inventory, int guestCount) {
+		int capacityClass = Arrays.binarySearch(inventory.catalog.getCapacities(), guestCount);
+		return capacityClass < 0 ? -capacityClass - 1 : capacityClass;
+	}
+
+	private int endCandidate(Inventory inventory, int guestCount) {
+		int[] capacities = inventory.catalog.getCapacities();
+		if (allocationPolicy == AllocationPolicy.EXACT_MATCH) {
+			int capacityClass = Arrays.binarySearch(capacities, guestCount);
+			return capacityClass < 0 ? 0 : capacityClass + 1;
+		}
+		return capacities.length;
+	}
+
+	private boolean hasFreePlaces(Inventory inventory, int capacityClass, LocalDate dateFrom, LocalDate dateTo) {
+		int nights = inventory.calendar.getNights();
+		int from = (int) (dateFrom.toEpochDay() - inventory.firstNight);
+		int to = (int) (dateTo.toEpochDay() - inventory.firstNight);
+		int base = capacityClass * nights;
+		for (int night = from; night < to; night++) {
+			if (inventory.freePlacesByCapacity.get(base + night) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isInWindow(Inventory inventory, LocalDate dateFrom, LocalDate dateTo) {
+		long from = dateFrom.toEpochDay() - inventory.firstNight;
+		long to = dateTo.toEpochDay() - inventory.firstNight;
+		return from >= 0 && from < to && to <= inventory.calendar.getNights();
+	}
+
+	private boolean tryOccupy(Inventory inventory, int index, LocalDate dateFrom, LocalDate dateTo) {
+		if (!inventory.enter(index)) {
+			return false;
+		}
+		try {
+			if (journal == null) {
+				return occupy(inventory, index, dateFrom, dateTo);
+			}
+			return journaled(() -> encode(OCCUPY, index, dateFrom, dateTo),
+					() -> occupy(inventory, index, dateFrom, dateTo), () -> {
+					});
+		} finally {
+			inventory.exit(index);
+		}
+	}
+
+	private void awaitReload(Inventory inventory) {
+		for (int spins = 0; this.inventory == inventory && inventory.sealed; spins++) {
+			if (spins < RELOAD_SPINS) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(this, 100_000);
+			}
+		}
+	}
+
+	private boolean occupy(Inventory inventory, int index, LocalDate dateFrom, LocalDate dateTo) {
+		if (!inventory.calendar.tryOccupy(index, dateFrom, dateTo)) {
+			return false;
+		}
+		addFreePlaces(inventory, index, dateFrom, dateTo, -1);
+		return true;
+	}
+
+	private void addFreePlaces(Inventory inventory, int index, LocalDate dateFrom, LocalDate dateTo, int sign) {
+		int capacity = inventory.catalog.getCapacity(index);
+		int from = (int) Math.max(dateFrom.toEpochDay() - inventory.firstNight, 0);
+		int to = (int) (dateTo.toEpochDay() - inventory.firstNight);
+		int base = Arrays.binarySearch(inventory.catalog.getCapacities(), capacity) * inventory.calendar.getNights();
+		for (int night = from; night < to; night++) {
+			inventory.freePlaces.addAndGet(night, sign * capacity);
+			inventory.freePlacesByCapacity.addAndGet(base + night, sign * capacity);
+		}
+	}
+
+	private boolean journaled(Supplier<byte[]> event, BooleanSupplier condition, Runnable apply) {
+		if (journal == null) {
+			if (!condition.getAsBoolean()) {
+				return false;
+			}
+			apply.run();
+			return true;
+		}
+		boolean applied = journal.appendIf(event.get(), condition, apply);
+		journal.compactIfDue(() -> snapshot(inventory));
+		return applied;
+	}
+
+	private void recover() {
+		journal.replay(new Recovery());
+		inventory.countOccupiedPlaces();
+		long now = clock.millis();
+		for (Map.Entry<String, Hold> hold : holds.entrySet()) {
+			holdExpiry.schedule(hold.getKey(), Math.max(0, hold.getValue().deadlineMillis - now),
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private Iterable<byte[]> snapshot(Inventory inventory) {
+		RoomCalendar calendar = inventory.calendar;
+		int roomCount = inventory.catalog.size();
+		int wordsPerRoom = calendar.getWordsPerRoom();
+		int roomsPerChunk = Math.max(1, SNAPSHOT_CHUNK_WORDS / wordsPerRoom);
+		Stream<byte[]> header = Stream.of(ByteBuffer.allocate(13).put(SNAPSHOT_HEADER).putInt((int) inventory.firstNight)
+				.putInt(roomCount).putInt(wordsPerRoom).array());
+		Stream<byte[]> rows = IntStream.range(0, (roomCount + roomsPerChunk - 1) / roomsPerChunk).mapToObj(chunk -> {
+			int from = chunk * roomsPerChunk;
+			int to = Math.min(from + roomsPerChunk, roomCount);
+			ByteBuffer buffer = ByteBuffer.allocate(5 + (to - from) * wordsPerRoom * Long.BYTES).put(SNAPSHOT_ROWS)
+					.putInt(from);
+			for (int index = from; index < to; index++) {
+				for (int word = 0; word < wordsPerRoom; word++) {
+					buffer.putLong(calendar.getWord(index, word));
+				}
+			}
+			return buffer.array();
+		});
+		Stream<byte[]> activeHolds = holds.entrySet().stream()
+				.map(hold -> encode(HOLD, IdGenerator.parse(hold.getKey()), hold.getValue()));
+		return Stream.concat(Stream.concat(header, rows), activeHolds)::iterator;
+	}
+
+	private static byte[] encode(byte type, int index, LocalDate dateFrom, LocalDate dateTo) {
+		return ByteBuffer.allocate(13).put(type).putInt(index).putInt((int) dateFrom.toEpochDay())
+				.putInt((int) (dateTo.toEpochDay() - dateFrom.toEpochDay())).array();
+	}
+
+	private static byte[] encode(byte type, long token, Hold hold) {
+		ByteBuffer buffer = ByteBuffer.allocate(type == HOLD ? 29 : 21).put(type).putLong(token).putInt(hold.index)
+				.putInt((int) hold.dateFrom.toEpochDay())
+				.putInt((int) (hold.dateTo.toEpochDay() - hold.dateFrom.toEpochDay()));
+		if (type == HOLD) {
+			buffer.putLong(hold.deadlineMillis);
+		}
+		return buffer.array();
+	}
+
+	private Inventory inventory() {
+		Inventory inventory = this.inventory;
+		if (clock.millis() < rollAtMillis) {
+			return inventory;
+		}
+		roll();
+		return this.inventory;
+	}
+
+	private long rollAt(Inventory inventory) {
+		long night = inventory.firstNight + Math.max(1, inventory.calendar.getNights() / 2);
+		return LocalDate.ofEpochDay(night).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+	}
+
+	private int tonight(Inventory inventory) {
+		long night = LocalDate.now(clock).toEpochDay() - inventory.firstNight;
+		if (night < 0 || night >= inventory.calendar.getNights()) {
+			throw new BusinessException();
+		}
+		return (int) night;
+	}
+
+	private int getRoomIndex(Inventory inventory, String roomId) {
+		int index = inventory.catalog.indexOf(roomId);
+		if (index < 0) {
+			throw new BusinessException();
+		}
+		return index;
+	}
+
 }
@@ -0,0 +1,357 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies every mutation of a {@link RoomService} on one writer thread, in
+ * the style of the LMAX Disruptor: producers claim a slot of a pre-allocated
+ * ring buffer with one atomic increment, fill it and publish it, and the
+ * writer drains slots in sequence and completes each caller's future. Only
+ * the writer touches the calendar, so claims never contend or roll back.
+ * Reads go straight to the wrapped service, whose state the writer publishes
+ * word by word. Expired holds are the one exception: the wrapped service's
+ * timing wheel releases them itself, which the calendar's compare-and-set
+ * makes safe. Stop producers before {@link #close()}, which lets the writer
+ * finish what was published and exit; the wrapped service stays open.
+ */
+public class SingleWriterRoomService implements RoomEngine {
+
+	private static final int DEFAULT_BUFFER_SIZE = 1024;
+	private static final int SPINS = 100;
+
+	private enum Operation {
+		CLAIM, TRY_CLAIM, CLAIM_ALL, BOOK, TRY_BOOK, UNBOOK, HOLD, CONFIRM, RELEASE
+	}
+
+	private static class Slot {
+
+		private volatile long sequence = -1;
+		private long claimedSequence;
+		private Operation operation;
+		private BookingRequest bookingRequest;
+		private List<BookingRequest> bookingRequests;
+		private String roomId;
+		private String token;
+		private LocalDate dateFrom;
+		private LocalDate dateTo;
+		private Duration ttl;
+		private CompletableFuture<Object> future;
+	}
+
+	private final RoomService roomService;
+	private final Slot[] slots;
+	private final int mask;
+	private final AtomicLong claimed = new AtomicLong();
+	private final Thread writer;
+	private volatile long processed;
+	private volatile boolean closed;
+
+	public SingleWriterRoomService(RoomService roomService) {
+		this(roomService, DEFAULT_BUFFER_SIZE);
+	}
+
+	public SingleWriterRoomService(RoomService roomService, int bufferSize) {
+		if (Integer.bitCount(bufferSize) != 1) {
+			throw new IllegalArgumentException("Buffer size must be a power of two: " + bufferSize);
+		}
+		this.roomService = roomService;
+		this.slots = new Slot[bufferSize];
+		for (int i = 0; i < bufferSize; i++) {
+			slots[i] = new Slot();
+		}
+		this.mask = bufferSize - 1;
+		this.writer = new Thread(this::drain, "room-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public CompletableFuture<String> claimAvailableRoomAsync(BookingRequest bookingRequest) {
+		Slot slot = next(Operation.CLAIM);
+		slot.bookingRequest = bookingRequest;
+		return publish(slot);
+	}
+
+	public CompletableFuture<String> tryClaimAvailableRoomAsync(BookingRequest bookingRequest) {
+		Slot slot = next(Operation.TRY_CLAIM);
+		slot.bookingRequest = bookingRequest;
+		return publish(slot);
+	}
+
+	public CompletableFuture<String[]> claimAvailableRoomsAsync(List<BookingRequest> bookingRequests) {
+		Slot slot = next(Operation.CLAIM_ALL);
+		slot.bookingRequests = bookingRequests;
+		return publish(slot);
+	}
+
+	public CompletableFuture<Void> bookRoomAsync(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		return publish(stay(next(Operation.BOOK), roomId, dateFrom, dateTo));
+	}
+
+	public CompletableFuture<Boolean> tryBookRoomAsync(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		return publish(stay(next(Operation.TRY_BOOK), roomId, dateFrom, dateTo));
+	}
+
+	public CompletableFuture<Void> unbookRoomAsync(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		return publish(stay(next(Operation.UNBOOK), roomId, dateFrom, dateTo));
+	}
+
+	public CompletableFuture<String> holdAsync(String roomId, LocalDate dateFrom, LocalDate dateTo, Duration ttl) {
+		Slot slot = stay(next(Operation.HOLD), roomId, dateFrom, dateTo);
+		slot.ttl = ttl;
+		return publish(slot);
+	}
+
+	public CompletableFuture<Void> confirmAsync(String token) {
+		Slot slot = next(Operation.CONFIRM);
+		slot.token = token;
+		return publish(slot);
+	}
+
+	public CompletableFuture<Void> releaseAsync(String token) {
+		Slot slot = next(Operation.RELEASE);
+		slot.token = token;
+		return publish(slot);
+	}
+
+	@Override
+	public String findAvailableRoomId(BookingRequest bookingRequest) {
+		return roomService.findAvailableRoomId(bookingRequest);
+	}
+
+	@Override
+	public String tryFindAvailableRoom(BookingRequest bookingRequest) {
+		return roomService.tryFindAvailableRoom(bookingRequest);
+	}
+
+	@Override
+	public Room findAvailableRoom(BookingRequest bookingRequest) {
+		return roomService.findAvailableRoom(bookingRequest);
+	}
+
+	@Override
+	public String claimAvailableRoom(BookingRequest bookingRequest) {
+		return join(claimAvailableRoomAsync(bookingRequest));
+	}
+
+	@Override
+	public String tryClaimAvailableRoom(BookingRequest bookingRequest) {
+		return join(tryClaimAvailableRoomAsync(bookingRequest));
+	}
+
+	@Override
+	public String[] claimAvailableRooms(List<BookingRequest> bookingRequests) {
+		return join(claimAvailableRoomsAsync(bookingRequests));
+	}
+
+	@Override
+	public boolean isRoomAvailable(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		return roomService.isRoomAvailable(roomId, dateFrom, dateTo);
+	}
+
+	@Override
+	public List<Room> getAvailableRooms() {
+		return roomService.getAvailableRooms();
+	}
+
+	@Override
+	public int getAvailablePlaceCount() {
+		return roomService.getAvailablePlaceCount();
+	}
+
+	@Override
+	public int getAvailablePlaceCount(int capacity) {
+		return roomService.getAvailablePlaceCount(capacity);
+	}
+
+	@Override
+	public int getRoomCount() {
+		return roomService.getRoomCount();
+	}
+
+	@Override
+	public AllocationPolicy getAllocationPolicy() {
+		return roomService.getAllocationPolicy();
+	}
+
+	@Override
+	public void bookRoom(String roomId) {
+		LocalDate tonight = LocalDate.now(roomService.getClock());
+		bookRoom(roomId, tonight, tonight.plusDays(1));
+	}
+
+	@Override
+	public void bookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		join(bookRoomAsync(roomId, dateFrom, dateTo));
+	}
+
+	@Override
+	public boolean tryBookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		return join(tryBookRoomAsync(roomId, dateFrom, dateTo));
+	}
+
+	@Override
+	public void unbookRoom(String roomId) {
+		LocalDate tonight = LocalDate.now(roomService.getClock());
+		unbookRoom(roomId, tonight, tonight.plusDays(1));
+	}
+
+	@Override
+	public void unbookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		join(unbookRoomAsync(roomId, dateFrom, dateTo));
+	}
+
+	@Override
+	public String hold(String roomId, Duration ttl) {
+		LocalDate tonight = LocalDate.now(roomService.getClock());
+		return hold(roomId, tonight, tonight.plusDays(1), ttl);
+	}
+
+	@Override
+	public String hold(String roomId, LocalDate dateFrom, LocalDate dateTo, Duration ttl) {
+		return join(holdAsync(roomId, dateFrom, dateTo, ttl));
+	}
+
+	@Override
+	public void confirm(String token) {
+		join(confirmAsync(token));
+	}
+
+	@Override
+	public void release(String token) {
+		join(releaseAsync(token));
+	}
+
+	@Override
+	public int getHoldCount() {
+		return roomService.getHoldCount();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Slot next(Operation operation) {
+		if (closed) {
+			throw new IllegalStateException("Room writer is closed");
+		}
+		long sequence = claimed.getAndIncrement();
+		for (int spins = 0; sequence - processed >= slots.length; spins++) {
+			backOff(spins);
+		}
+		Slot slot = slots[(int) sequence & mask];
+		slot.claimedSequence = sequence;
+		slot.operation = operation;
+		slot.future = new CompletableFuture<>();
+		return slot;
+	}
+
+	private static Slot stay(Slot slot, String roomId, LocalDate dateFrom, LocalDate dateTo) {
+		slot.roomId = roomId;
+		slot.dateFrom = dateFrom;
+		slot.dateTo = dateTo;
+		return slot;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> publish(Slot slot) {
+		CompletableFuture<Object> future = slot.future;
+		slot.sequence = slot.claimedSequence;
+		LockSupport.unpark(writer);
+		return (CompletableFuture<T>) (CompletableFuture<?>) future;
+	}
+
+	private void drain() {
+		long next = 0;
+		int spins = 0;
+		while (true) {
+			Slot slot = slots[(int) next & mask];
+			if (slot.sequence != next) {
+				if (closed && claimed.get() == next) {
+					return;
+				}
+				if (spins++ < SPINS) {
+					Thread.yield();
+				} else {
+					LockSupport.park(this);
+				}
+				continue;
+			}
+			spins = 0;
+			CompletableFuture<Object> future = slot.future;
+			try {
+				future.complete(apply(slot));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+			slot.bookingRequest = null;
+			slot.bookingRequests = null;
+			slot.roomId = null;
+			slot.token = null;
+			slot.dateFrom = null;
+			slot.dateTo = null;
+			slot.ttl = null;
+			slot.future = null;
+			processed = ++next;
+		}
+	}
+
+	private Object apply(Slot slot) {
+		switch (slot.operation) {
+		case CLAIM:
+			return roomService.claimAvailableRoom(slot.bookingRequest);
+		case TRY_CLAIM:
+			return roomService.tryClaimAvailableRoom(slot.bookingRequest);
+		case CLAIM_ALL:
+			return roomService.claimAvailableRooms(slot.bookingRequests);
+		case BOOK:
+			roomService.bookRoom(slot.roomId, slot.dateFrom, slot.dateTo);
+			return null;
+		case TRY_BOOK:
+			return roomService.tryBookRoom(slot.roomId, slot.dateFrom, slot.dateTo);
+		case UNBOOK:
+			roomService.unbookRoom(slot.roomId, slot.dateFrom, slot.dateTo);
+			return null;
+		case HOLD:
+			return roomService.hold(slot.roomId, slot.dateFrom, slot.dateTo, slot.ttl);
+		case CONFIRM:
+			roomService.confirm(slot.token);
+			return null;
+		default:
+			roomService.release(slot.token);
+			return null;
+		}
+	}
+
+	private static void backOff(int spins) {
+		if (spins < SPINS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(1_000);
+		}
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.util.Arrays;
+
+/**
+ * Arrival and departure epoch days and guest counts of stored bookings,
+ * copied out of a {@link BookingStore} for analytics. Bookings without both
+ * dates are left out.
+ */
+class Stays {
+
+	private int[] datesFrom;
+	private int[] datesTo;
+	private int[] guestCounts;
+	private int size;
+
+	Stays(int capacity) {
+		this.datesFrom = new int[Math.max(capacity, 16)];
+		this.datesTo = new int[datesFrom.length];
+		this.guestCounts = new int[datesFrom.length];
+	}
+
+	void add(int dateFrom, int dateTo, int guestCount) {
+		if (size == datesFrom.length) {
+			datesFrom = Arrays.copyOf(datesFrom, size * 2);
+			datesTo = Arrays.copyOf(datesTo, size * 2);
+			guestCounts = Arrays.copyOf(guestCounts, size * 2);
+		}
+		datesFrom[size] = dateFrom;
+		datesTo[size] = dateTo;
+		guestCounts[size++] = guestCount;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getDateFrom(int stay) {
+		return datesFrom[stay];
+	}
+
+	int getDateTo(int stay) {
+		return datesTo[stay];
+	}
+
+	int getGuestCount(int stay) {
+		return guestCounts[stay];
+	}
+
+}
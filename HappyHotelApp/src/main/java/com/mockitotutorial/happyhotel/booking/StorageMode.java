@@ -0,0 +1,14 @@
+package com.mockitotutorial.happyhotel.booking;
+
+/**
+ * How {@link BookingDAO} keeps bookings in memory.
+ */
+public enum StorageMode {
+
+	/** The saved {@link BookingRequest} objects, indexed by user, room and date. */
+	HEAP,
+
+	/** Primitive columns with dictionary-encoded ids; reads build a copy. */
+	COLUMNAR
+
+}
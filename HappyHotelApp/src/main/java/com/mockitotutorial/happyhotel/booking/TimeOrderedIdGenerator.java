@@ -0,0 +1,60 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Time-ordered 64-bit ids in the spirit of ULID/UUIDv7: 42 bits of
+ * milliseconds since 2020-01-01, a 10-bit shard and a 12-bit sequence within
+ * the millisecond. Each thread is pinned to a shard, so threads never share
+ * state unless more than 1,024 of them generate ids; a shard that runs out of
+ * sequence numbers borrows the next millisecond, keeping its ids monotonic.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+	public static final TimeOrderedIdGenerator INSTANCE = new TimeOrderedIdGenerator();
+
+	private static final long EPOCH_MILLIS = 1_577_836_800_000L;
+	private static final int SHARD_BITS = 10;
+	private static final int SEQUENCE_BITS = 12;
+	private static final int SHARDS = 1 << SHARD_BITS;
+	private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+	private static class Shard {
+
+		private final long shard;
+		private long lastMillis;
+		private long sequence;
+
+		Shard(long shard) {
+			this.shard = shard;
+		}
+
+		synchronized long nextId(long nowMillis) {
+			if (nowMillis > lastMillis) {
+				lastMillis = nowMillis;
+				sequence = 0;
+			} else if (++sequence > MAX_SEQUENCE) {
+				lastMillis++;
+				sequence = 0;
+			}
+			return lastMillis << (SHARD_BITS + SEQUENCE_BITS) | shard << SEQUENCE_BITS | sequence;
+		}
+	}
+
+	private final Shard[] shards = new Shard[SHARDS];
+	private final AtomicInteger nextShard = new AtomicInteger();
+	private final ThreadLocal<Shard> threadShard = ThreadLocal
+			.withInitial(() -> shards[Math.floorMod(nextShard.getAndIncrement(), SHARDS)]);
+
+	public TimeOrderedIdGenerator() {
+		for (int i = 0; i < SHARDS; i++) {
+			shards[i] = new Shard(i);
+		}
+	}
+
+	@Override
+	public long nextId() {
+		return threadShard.get().nextId(System.currentTimeMillis() - EPOCH_MILLIS);
+	}
+
+}
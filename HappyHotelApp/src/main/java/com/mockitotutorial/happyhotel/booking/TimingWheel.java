@@ -0,0 +1,146 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel in the style of Varghese and Lauck: timeouts hash into
+ * one of a power-of-two number of buckets by their deadline tick, and one
+ * ticker thread expires a bucket per tick. Scheduling and expiring are O(1)
+ * regardless of how many timeouts are pending; a timeout further out than
+ * one revolution waits out its remaining rounds in its bucket.
+ * <p>
+ * Producers only append to a lock-free queue, and buckets are only touched by
+ * the ticker, which starts with the first timeout and parks while none are
+ * pending. A handler that throws is logged and does not stop the wheel.
+ */
+public class TimingWheel<T> implements Closeable {
+
+	private static class Timeout<T> {
+
+		private final T item;
+		private final long deadlineTick;
+		private long remainingRounds;
+		private Timeout<T> next;
+
+		Timeout(T item, long deadlineTick) {
+			this.item = item;
+			this.deadlineTick = deadlineTick;
+		}
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getName());
+
+	private final long tickNanos;
+	private final Consumer<T> onExpire;
+	private final Timeout<T>[] buckets;
+	private final int mask;
+	private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+	private final long startNanos = System.nanoTime();
+	private long tick;
+	private int scheduled;
+	private volatile Thread ticker;
+	private volatile boolean idle;
+	private volatile boolean closed;
+
+	public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, Consumer<T> onExpire) {
+		if (Integer.bitCount(ticksPerWheel) != 1) {
+			throw new IllegalArgumentException("Ticks per wheel must be a power of two: " + ticksPerWheel);
+		}
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.onExpire = onExpire;
+		@SuppressWarnings("unchecked")
+		Timeout<T>[] buckets = (Timeout<T>[]) new Timeout<?>[ticksPerWheel];
+		this.buckets = buckets;
+		this.mask = ticksPerWheel - 1;
+	}
+
+	public void schedule(T item, long delay, TimeUnit unit) {
+		long elapsedNanos = System.nanoTime() - startNanos + unit.toNanos(delay);
+		pending.add(new Timeout<>(item, (elapsedNanos + tickNanos - 1) / tickNanos));
+		if (ticker == null) {
+			startTicker();
+		} else if (idle) {
+			LockSupport.unpark(ticker);
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (this) {
+			if (ticker != null) {
+				LockSupport.unpark(ticker);
+			}
+		}
+	}
+
+	private synchronized void startTicker() {
+		if (ticker == null && !closed) {
+			ticker = new Thread(this::run, "timing-wheel");
+			ticker.setDaemon(true);
+			ticker.start();
+		}
+	}
+
+	private void run() {
+		while (!closed) {
+			if (scheduled == 0 && pending.isEmpty()) {
+				idle = true;
+				if (pending.isEmpty() && !closed) {
+					LockSupport.park(this);
+				}
+				idle = false;
+				tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos);
+				continue;
+			}
+			long nextTickNanos = startNanos + (tick + 1) * tickNanos;
+			long sleepNanos;
+			while ((sleepNanos = nextTickNanos - System.nanoTime()) > 0 && !closed) {
+				LockSupport.parkNanos(this, sleepNanos);
+			}
+			tick++;
+			transferPending();
+			expire(buckets[(int) tick & mask]);
+		}
+	}
+
+	private void transferPending() {
+		Timeout<T> timeout;
+		while ((timeout = pending.poll()) != null) {
+			long deadlineTick = Math.max(timeout.deadlineTick, tick);
+			int bucket = (int) deadlineTick & mask;
+			timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+			timeout.next = buckets[bucket];
+			buckets[bucket] = timeout;
+			scheduled++;
+		}
+	}
+
+	private void expire(Timeout<T> head) {
+		Timeout<T> kept = null;
+		for (Timeout<T> timeout = head; timeout != null;) {
+			Timeout<T> next = timeout.next;
+			if (timeout.remainingRounds-- <= 0) {
+				scheduled--;
+				try {
+					onExpire.accept(timeout.item);
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Expiring " + timeout.item + " failed", e);
+				}
+			} else {
+				timeout.next = kept;
+				kept = timeout;
+			}
+			timeout = next;
+		}
+		buckets[(int) tick & mask] = kept;
+	}
+
+}
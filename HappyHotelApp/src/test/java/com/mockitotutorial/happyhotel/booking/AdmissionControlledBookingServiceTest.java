@@ -0,0 +1,149 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AdmissionControlledBookingServiceTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+
+	private AdmissionControlledBookingService bookingService;
+
+	private PaymentService paymentServiceMock;
+
+	private RoomService roomService;
+
+	private BookingDAO bookingDAO;
+
+	@BeforeEach
+	void setup() {
+		List<Room> rooms = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			rooms.add(new Room(String.valueOf(i), 3));
+		}
+		this.paymentServiceMock = mock(PaymentService.class);
+		this.roomService = new RoomService(rooms,
+				Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+		this.bookingDAO = new BookingDAO();
+
+		this.bookingService = new AdmissionControlledBookingService(paymentServiceMock, roomService, bookingDAO,
+				mock(MailSender.class), new PricingEngine(), EngineMode.CONCURRENT, new ConcurrencyLimiter(1),
+				new ConcurrencyLimiter(1));
+	}
+
+	@AfterEach
+	void tearDown() {
+		bookingService.close();
+		roomService.close();
+	}
+
+	private static BookingRequest request(boolean prepaid) {
+		return new BookingRequest("1", TODAY, TODAY.plusDays(2), 2, prepaid);
+	}
+
+	@Test
+	void should_ShedBookingsButCancel_When_BookingLimitReached()
+			throws InterruptedException, ExecutionException {
+		// given
+		String booked = bookingService.makeBooking(request(false));
+		CountDownLatch paying = new CountDownLatch(1);
+		CountDownLatch paid = new CountDownLatch(1);
+		when(paymentServiceMock.pay(any(), anyDouble())).thenAnswer(invocation -> {
+			paying.countDown();
+			paid.await();
+			return null;
+		});
+		CompletableFuture<String> slowBooking = CompletableFuture
+				.supplyAsync(() -> bookingService.makeBooking(request(true)));
+		paying.await();
+
+		// when
+		OverloadedException shed = assertThrows(OverloadedException.class,
+				() -> bookingService.makeBooking(request(false)));
+		CompletableFuture<String> shedAsync = bookingService.makeBookingAsync(request(false));
+		bookingService.cancelBooking(booked);
+		paid.countDown();
+
+		// then
+		assertSame(OverloadedException.INSTANCE, shed);
+		assertTrue(shedAsync.isCompletedExceptionally());
+		assertNull(bookingDAO.get(booked));
+		assertEquals(2, bookingService.getBookingLimiter().getRejectedCount());
+		slowBooking.get();
+		assertEquals(1, bookingDAO.size());
+		assertEquals(0, bookingService.getBookingLimiter().getInFlight());
+	}
+
+	@Test
+	void should_BackOffOncePerRoundAndRegrow_When_LatencyOverTarget() throws InterruptedException {
+		// given
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 2, 100, 1, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		for (int i = 0; i < 12; i++) {
+			assertTrue(limiter.tryAcquire());
+		}
+		Thread.sleep(5);
+
+		// when
+		limiter.release(start);
+		limiter.release(start);
+		int backedOff = limiter.getLimit();
+		for (int i = 0; i < 40; i++) {
+			limiter.release(System.nanoTime());
+			assertTrue(limiter.tryAcquire());
+		}
+
+		// then
+		assertEquals(18, backedOff);
+		assertEquals(20, limiter.getLimit());
+		assertEquals(10, limiter.getInFlight());
+	}
+
+	@Test
+	void should_StayWithinBounds_When_ReleasedConcurrently() throws InterruptedException {
+		// given
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 2, 8, 1, TimeUnit.SECONDS);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					if (limiter.tryAcquire()) {
+						limiter.release(System.nanoTime());
+					}
+				}
+			}));
+		}
+
+		// when
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(10_000);
+		}
+
+		// then
+		assertEquals(0, limiter.getInFlight());
+		assertTrue(limiter.getLimit() >= 4 && limiter.getLimit() <= 8, "limit " + limiter.getLimit());
+	}
+
+}
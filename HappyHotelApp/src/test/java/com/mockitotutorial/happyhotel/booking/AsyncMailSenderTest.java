@@ -0,0 +1,109 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class AsyncMailSenderTest {
+
+	// local sink standing in for the SMTP transport
+	private static class MailSink extends MailSender {
+
+		private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+		private final AtomicInteger failuresLeft;
+		private final CountDownLatch release;
+		private final CountDownLatch entered = new CountDownLatch(1);
+
+		MailSink(int failures, CountDownLatch release) {
+			this.failuresLeft = new AtomicInteger(failures);
+			this.release = release;
+		}
+
+		@Override
+		public void sendBookingConfirmations(List<String> bookingIds) {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (failuresLeft.getAndDecrement() > 0) {
+				throw new UnsupportedOperationException("SMTP unavailable");
+			}
+			batches.add(new ArrayList<>(bookingIds));
+		}
+
+		int mailed() {
+			synchronized (batches) {
+				return batches.stream().mapToInt(List::size).sum();
+			}
+		}
+	}
+
+	@Test
+	void should_SendConfirmationsInBatches_When_Enqueued() {
+		// given
+		MailSink sink = new MailSink(0, new CountDownLatch(0));
+		AsyncMailSender mailSender = new AsyncMailSender(sink, 1_000, 1, 50, TimeUnit.MILLISECONDS);
+
+		// when
+		for (int i = 0; i < 100; i++) {
+			mailSender.sendBookingConfirmation(String.valueOf(i));
+		}
+		mailSender.close();
+
+		// then
+		assertEquals(100, sink.mailed());
+		assertEquals(100, mailSender.getSentCount());
+		assertTrue(mailSender.getBatchCount() < 100);
+		assertEquals(0, mailSender.getQueueDepth());
+	}
+
+	@Test
+	void should_RetryBatch_When_TransportFails() {
+		// given
+		MailSink sink = new MailSink(2, new CountDownLatch(0));
+		AsyncMailSender mailSender = new AsyncMailSender(sink, 1_000, 1, 10, TimeUnit.MILLISECONDS);
+
+		// when
+		mailSender.sendBookingConfirmation("1");
+		mailSender.close();
+
+		// then
+		assertEquals(1, sink.mailed());
+		assertEquals(2, mailSender.getRetryCount());
+		assertEquals(0, mailSender.getFailedCount());
+	}
+
+	@Test
+	void should_RejectConfirmation_When_QueueFull() throws InterruptedException {
+		// given
+		CountDownLatch release = new CountDownLatch(1);
+		MailSink sink = new MailSink(0, release);
+		AsyncMailSender mailSender = new AsyncMailSender(sink, 2, 1, 10, TimeUnit.MILLISECONDS);
+		mailSender.sendBookingConfirmation("1");
+		assertTrue(sink.entered.await(5, TimeUnit.SECONDS));
+
+		// when
+		assertThrows(IllegalStateException.class, () -> {
+			for (int i = 2; i < 10; i++) {
+				mailSender.sendBookingConfirmation(String.valueOf(i));
+			}
+		});
+		release.countDown();
+		mailSender.close();
+
+		// then
+		assertEquals(3, sink.mailed());
+	}
+
+}
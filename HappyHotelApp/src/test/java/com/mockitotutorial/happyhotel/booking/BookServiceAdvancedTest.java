@@ -49,6 +49,8 @@ class BookServiceAdvancedTest {
 		this.bookingDAOMock = mock(BookingDAO.class);
 		this.mailSenderMock = mock(MailSender.class);
 
+		when(this.roomServiceMock.tryClaimAvailableRoom(any())).thenReturn("1.1");
+
 		this.bookingService = new BookingService(paymentServiceMock, roomServiceMock,
 				bookingDAOMock, mailSenderMock);
 
@@ -98,7 +100,7 @@ class BookServiceAdvancedTest {
     @Test
     void should_CountAvailablePlaces_When_MultipleRoomsAvailable(){
         // given
-        given(this.roomServiceMock.getAvailableRooms()).willReturn(Collections.singletonList(new Room("Room 1", 2)));
+        given(this.roomServiceMock.getAvailablePlaceCount()).willReturn(2);
 
         int expected = 2;
 
@@ -188,7 +190,7 @@ class BookServiceAdvancedTest {
     @Test
     void should_CountAvailablePlaces_When_OnRoomAvailable() {
         // given
-        when(this.roomServiceMock.getAvailableRooms()).thenReturn(Collections.singletonList(new Room("Room 1", 5)));
+        when(this.roomServiceMock.getAvailablePlaceCount()).thenReturn(5);
         int expected = 5;
 
         // when
@@ -0,0 +1,214 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BookServiceAsyncTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+
+	private BookingService bookingService;
+
+	private PaymentService paymentService;
+
+	private RoomService roomService;
+
+	private BookingDAO bookingDAO;
+
+	private MailSender mailSenderMock;
+
+	@BeforeEach
+	void setup() {
+		this.paymentService = spy(new PaymentService());
+		this.roomService = new RoomService(rooms(2), clock());
+		this.bookingDAO = new BookingDAO();
+		this.mailSenderMock = mock(MailSender.class);
+
+		this.bookingService = new BookingService(paymentService, roomService, bookingDAO, mailSenderMock);
+	}
+
+	@AfterEach
+	void tearDown() {
+		bookingService.close();
+		roomService.close();
+	}
+
+	private static List<Room> rooms(int count) {
+		List<Room> rooms = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			rooms.add(new Room(String.valueOf(i), 3));
+		}
+		return rooms;
+	}
+
+	private static Clock clock() {
+		return Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+	}
+
+	private static BookingRequest request(int guestCount, boolean prepaid) {
+		return new BookingRequest("1", TODAY, TODAY.plusDays(2), guestCount, prepaid);
+	}
+
+	@Test
+	void should_PayOnPaymentThreadAndSave_When_BookedAsync() {
+		// given
+		BookingRequest bookingRequest = request(2, true);
+		AtomicReference<String> paymentThread = new AtomicReference<>();
+		doAnswer(invocation -> {
+			paymentThread.set(Thread.currentThread().getName());
+			return invocation.callRealMethod();
+		}).when(paymentService).pay(any(), anyDouble());
+
+		// when
+		String bookingId = bookingService.makeBookingAsync(bookingRequest).join();
+
+		// then
+		assertEquals(bookingRequest, bookingDAO.get(bookingId));
+		assertNotNull(bookingRequest.getRoomId());
+		assertTrue(paymentThread.get().startsWith("booking-payment-"));
+		verify(paymentService, times(1)).pay(bookingRequest, 200.0);
+		verify(mailSenderMock, times(1)).sendBookingConfirmation(bookingId);
+		assertEquals(3, roomService.getAvailablePlaceCount());
+	}
+
+	@Test
+	void should_PriceAndClaimOnDifferentThreads_When_BookedAsync() {
+		// given
+		bookingService.close();
+		roomService.close();
+		PricingEngine pricingEngine = spy(new PricingEngine());
+		roomService = spy(new RoomService(rooms(2), clock()));
+		bookingService = new BookingService(paymentService, roomService, bookingDAO, mailSenderMock, pricingEngine);
+		AtomicReference<Thread> priceThread = new AtomicReference<>();
+		AtomicReference<Thread> claimThread = new AtomicReference<>();
+		doAnswer(invocation -> {
+			priceThread.set(Thread.currentThread());
+			return invocation.callRealMethod();
+		}).when(pricingEngine).price(any());
+		doAnswer(invocation -> {
+			claimThread.set(Thread.currentThread());
+			return invocation.callRealMethod();
+		}).when(roomService).claimAvailableRoom(any());
+
+		// when
+		String bookingId = bookingService.makeBookingAsync(request(2, false)).join();
+
+		// then
+		assertNotNull(bookingDAO.get(bookingId));
+		assertNotNull(priceThread.get());
+		assertNotNull(claimThread.get());
+		assertNotEquals(claimThread.get(), priceThread.get());
+		assertTrue(priceThread.get().getName().startsWith("booking-payment-"));
+	}
+
+	@Test
+	void should_ReleaseRoom_When_AsyncPaymentFails() {
+		// given
+		BookingRequest bookingRequest = request(1, true);
+		doThrow(BusinessException.class).when(paymentService).pay(any(), anyDouble());
+
+		// when
+		CompletableFuture<String> bookingId = bookingService.makeBookingAsync(bookingRequest);
+
+		// then
+		CompletionException exception = assertThrows(CompletionException.class, bookingId::join);
+		assertTrue(exception.getCause() instanceof BusinessException);
+		assertEquals(6, roomService.getAvailablePlaceCount());
+		assertEquals(0, bookingDAO.size());
+		verifyNoInteractions(mailSenderMock);
+	}
+
+	@Test
+	void should_UndoBookingAndRefund_When_AsyncMailFails() {
+		// given
+		BookingRequest bookingRequest = request(2, true);
+		AtomicReference<String> paymentId = new AtomicReference<>();
+		doAnswer(invocation -> {
+			paymentId.set((String) invocation.callRealMethod());
+			return paymentId.get();
+		}).when(paymentService).pay(any(), anyDouble());
+		doThrow(IllegalStateException.class).when(mailSenderMock).sendBookingConfirmation(any());
+
+		// when
+		CompletableFuture<String> bookingId = bookingService.makeBookingAsync(bookingRequest);
+
+		// then
+		assertThrows(CompletionException.class, bookingId::join);
+		assertEquals(6, roomService.getAvailablePlaceCount());
+		assertEquals(0, bookingDAO.size());
+		assertNull(paymentService.getPayment(paymentId.get()));
+	}
+
+	@Test
+	void should_OverlapSlowPayments_When_BookedAsync() {
+		// given
+		bookingService.close();
+		roomService.close();
+		roomService = new RoomService(rooms(20), clock());
+		bookingService = new BookingService(paymentService, roomService, bookingDAO, mailSenderMock,
+				EngineMode.SINGLE_WRITER);
+		doAnswer(invocation -> {
+			Thread.sleep(100);
+			return invocation.callRealMethod();
+		}).when(paymentService).pay(any(), anyDouble());
+		List<CompletableFuture<String>> bookingIds = new ArrayList<>();
+
+		// when
+		long start = System.nanoTime();
+		for (int i = 0; i < 20; i++) {
+			bookingIds.add(bookingService.makeBookingAsync(request(3, true)));
+		}
+		CompletableFuture.allOf(bookingIds.toArray(new CompletableFuture<?>[0])).join();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// then
+		assertEquals(20, bookingDAO.size());
+		assertEquals(0, roomService.getAvailablePlaceCount());
+		assertTrue(elapsedMillis < 1000, "20 payments of 100 ms took " + elapsedMillis + " ms");
+		verify(mailSenderMock, times(20)).sendBookingConfirmation(anyString());
+	}
+
+	@Test
+	void should_CloseOnlyWhatItCreated_When_Closed() {
+		// given
+		bookingService.close();
+		roomService.close();
+		roomService = spy(new RoomService(rooms(2), clock()));
+		ExecutorService paymentExecutor = Executors.newSingleThreadExecutor();
+		bookingService = new BookingService(paymentService, roomService, bookingDAO, mailSenderMock,
+				new PricingEngine(), EngineMode.SINGLE_WRITER, paymentExecutor);
+		bookingService.makeBookingAsync(request(2, true)).join();
+
+		// when
+		bookingService.close();
+
+		// then
+		assertFalse(paymentExecutor.isShutdown());
+		verify(roomService, never()).close();
+		paymentExecutor.shutdown();
+	}
+
+}
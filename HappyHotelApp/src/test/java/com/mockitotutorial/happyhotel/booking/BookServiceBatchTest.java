@@ -0,0 +1,137 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+
+class BookServiceBatchTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+
+	private BookingService bookingService;
+
+	private PaymentService paymentServiceMock;
+
+	private RoomService roomService;
+
+	private BookingDAO bookingDAO;
+
+	private MailSender mailSenderMock;
+
+	@Captor
+	private ArgumentCaptor<List<String>> mailedIds;
+
+	@BeforeEach
+	void setup() {
+		this.paymentServiceMock = mock(PaymentService.class);
+		this.roomService = new RoomService(Arrays.asList(
+				new Room("1.1", 2),
+				new Room("1.2", 2),
+				new Room("2.1", 3)),
+				Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+		this.bookingDAO = new BookingDAO();
+		this.mailSenderMock = mock(MailSender.class);
+		MockitoAnnotations.openMocks(this);
+
+		this.bookingService = new BookingService(paymentServiceMock, roomService, bookingDAO, mailSenderMock);
+	}
+
+	private static BookingRequest request(String userId, int guestCount, boolean prepaid) {
+		return new BookingRequest(userId, TODAY, TODAY.plusDays(2), guestCount, prepaid);
+	}
+
+	@Test
+	void should_BookWholeBatch_When_RoomsAvailable() {
+		// given
+		List<BookingRequest> bookingRequests = Arrays.asList(request("1", 2, true), request("1", 3, true),
+				request("2", 2, false));
+
+		// when
+		List<BookingResult> results = bookingService.makeBookings(bookingRequests);
+
+		// then
+		assertTrue(results.stream().allMatch(BookingResult::isBooked));
+		assertEquals(3, bookingDAO.findByDateFrom(TODAY, TODAY.plusDays(1)).size());
+		verify(paymentServiceMock, times(1)).payAll(eq(Arrays.asList(bookingRequests.get(0), bookingRequests.get(1))),
+				eq(500.0));
+		verify(paymentServiceMock).validate(bookingRequests.get(0), 200.0);
+		verify(paymentServiceMock).validate(bookingRequests.get(1), 300.0);
+		verifyNoMoreInteractions(paymentServiceMock);
+		verify(mailSenderMock, times(1)).sendBookingConfirmations(anyList());
+	}
+
+	@Test
+	void should_RejectOnlyOverflow_When_NotEnoughRooms() {
+		// given
+		List<BookingRequest> bookingRequests = Arrays.asList(request("1", 2, false), request("2", 2, false),
+				request("3", 2, false), request("4", 2, false));
+
+		// when
+		List<BookingResult> results = bookingService.makeBookings(bookingRequests);
+
+		// then
+		assertAll(() -> assertTrue(results.get(0).isBooked()),
+				() -> assertTrue(results.get(1).isBooked()),
+				() -> assertTrue(results.get(2).isBooked()),
+				() -> assertEquals("2.1", bookingRequests.get(2).getRoomId()),
+				() -> assertFalse(results.get(3).isBooked()),
+				() -> assertTrue(results.get(3).getError() instanceof BusinessException));
+	}
+
+	@Test
+	void should_ReleasePayerRooms_When_GroupedPaymentFails() {
+		// given
+		List<BookingRequest> bookingRequests = Arrays.asList(request("1", 2, true), request("2", 2, true));
+		when(paymentServiceMock.payAll(eq(Arrays.asList(bookingRequests.get(0))), anyDouble()))
+				.thenThrow(BusinessException.class);
+
+		// when
+		List<BookingResult> results = bookingService.makeBookings(bookingRequests);
+
+		// then
+		verify(mailSenderMock).sendBookingConfirmations(mailedIds.capture());
+		assertAll(() -> assertFalse(results.get(0).isBooked()),
+				() -> assertTrue(results.get(1).isBooked()),
+				() -> assertEquals(Arrays.asList(results.get(1).getBookingId()), mailedIds.getValue()),
+				() -> assertTrue(roomService.isRoomAvailable("1.1", TODAY, TODAY.plusDays(2))),
+				() -> assertFalse(roomService.isRoomAvailable("1.2", TODAY, TODAY.plusDays(2))));
+	}
+
+	@Test
+	void should_RejectOnlyLargeSmallGroup_When_BatchedWithLargeGroup() {
+		// given
+		RoomService rooms = new RoomService(Arrays.asList(new Room("1.1", 2), new Room("1.3", 5)),
+				Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+		BookingService validatingService = new BookingService(new PaymentService(), rooms, bookingDAO,
+				mailSenderMock);
+		List<BookingRequest> bookingRequests = Arrays.asList(
+				new BookingRequest("1", TODAY, TODAY.plusDays(4), 2, true), request("1", 5, true));
+
+		// when
+		List<BookingResult> results = validatingService.makeBookings(bookingRequests);
+
+		// then
+		assertAll(() -> assertFalse(results.get(0).isBooked()),
+				() -> assertTrue(results.get(0).getError() instanceof UnsupportedOperationException),
+				() -> assertTrue(results.get(1).isBooked()),
+				() -> assertTrue(rooms.isRoomAvailable("1.1", TODAY, TODAY.plusDays(4))));
+		validatingService.close();
+		rooms.close();
+	}
+
+}
@@ -14,7 +14,6 @@ package com.mockitotutorial.happyhotel.booking;
 
 import java.time.LocalDate;
 import java.util.Collection;
-import java.util.Collections;
 
 
 
@@ -28,6 +27,7 @@ import org.mockito.Spy;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -56,6 +56,8 @@ class BookServiceTest {
         this.bookingDAOMock = mock(BookingDAO.class);
         this.mailSenderMock = mock(MailSender.class);
 
+        when(this.roomServiceMock.tryClaimAvailableRoom(any())).thenReturn("1.1");
+
         this.bookingService = new BookingService(paymentServiceMock, roomServiceMock, bookingDAOMock, mailSenderMock);
 
     }
@@ -81,7 +83,7 @@ class BookServiceTest {
         int expected = 0;
 
         // explanation
-        // getAvailablePlaceCount method use getAvailableRooms from RoomService class and return a list of type Room. Nice mocks default values: empty list by default, null object, 0/flase primitives
+        // getAvailablePlaceCount method use getAvailablePlaceCount from RoomService class and return an int. Nice mocks default values: empty list by default, null object, 0/flase primitives
         System.out.println("List returned " + roomServiceMock.getAvailableRooms());
         System.out.println("Object returned " + roomServiceMock.findAvailableRoomId(null));
         System.out.println("Primitive returned " + roomServiceMock.getRoomCount());
@@ -97,7 +99,7 @@ class BookServiceTest {
     @Test
     void should_CountAvailablePlaces_When_MultipleRoomsAvailable(){
         // given
-        when(this.roomServiceMock.getAvailableRooms()).thenReturn(Collections.singletonList(new Room("Room 1", 2)));
+        when(this.roomServiceMock.getAvailablePlaceCount()).thenReturn(2);
 
         int expected = 2;
 
@@ -112,9 +114,9 @@ class BookServiceTest {
     @Test
 	void should_CountAvailablePlaces_When_CalledMultipleTimes() {
 		// given
-		when(this.roomServiceMock.getAvailableRooms())
-				.thenReturn(Collections.singletonList(new Room("Room 1", 5)))
-				.thenReturn(Collections.emptyList());
+		when(this.roomServiceMock.getAvailablePlaceCount())
+				.thenReturn(5)
+				.thenReturn(0);
 		int expectedFirstCall = 5;
 		int expectedSecondCall = 0;
 
@@ -127,14 +129,13 @@ class BookServiceTest {
 				() -> assertEquals(expectedSecondCall, actualSecond));
 	}
     
-    // if no room as requested and no room is available should return a expection, to test the makebooking that call the findAvailableRoomId we could write this when that thenThrow instend of thenReturn
+    // if no room as requested and no room is available should return a expection, makebooking turns the null of tryClaimAvailableRoom into one
     @Test
 	void should_ThrowException_When_NoRoomAvailable() {
 		// given
 		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
 				LocalDate.of(2020, 01, 05), 2, false);
-		when(this.roomServiceMock.findAvailableRoomId(bookingRequest))
-				.thenThrow(BusinessException.class);
+		when(this.roomServiceMock.tryClaimAvailableRoom(bookingRequest)).thenReturn(null);
 
 		// when
 		Executable executable = () -> bookingService.makeBooking(bookingRequest);
@@ -143,6 +144,22 @@ class BookServiceTest {
 		assertThrows(BusinessException.class, executable);
 	}
 
+    // the try variant reports a missing room as null instead of an exception and stops before payment
+    @Test
+	void should_ReturnNull_When_TryingAndNoRoomAvailable() {
+		// given
+		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+				LocalDate.of(2020, 01, 05), 2, true);
+		when(this.roomServiceMock.tryClaimAvailableRoom(bookingRequest)).thenReturn(null);
+
+		// when
+		String bookingId = bookingService.tryMakeBooking(bookingRequest);
+
+		// then
+		assertNull(bookingId);
+		verifyNoInteractions(paymentServiceMock, bookingDAOMock, mailSenderMock);
+	}
+
     // in this test is mocked void methods
     @Test
 	void should_ThrowException_When_NoRoomAvailableV2() {
@@ -0,0 +1,109 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BookingAnalyticsTest {
+
+	private static final LocalDate FIRST_NIGHT = LocalDate.of(2020, 01, 01);
+	private static final Clock CLOCK = Clock.fixed(FIRST_NIGHT.atStartOfDay().toInstant(ZoneOffset.UTC),
+			ZoneOffset.UTC);
+
+	private ForkJoinPool pool;
+
+	private RoomService roomService;
+
+	private PricingEngine pricingEngine;
+
+	@BeforeEach
+	void setup() {
+		List<Room> rooms = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			rooms.add(new Room(String.valueOf(i), 3));
+		}
+		RatePlan ratePlan = new RatePlan(50.0);
+		ratePlan.setGuestTierPercent(3, 90);
+		this.pool = new ForkJoinPool(4);
+		this.roomService = new RoomService(rooms, CLOCK);
+		this.pricingEngine = new PricingEngine(ratePlan, FIRST_NIGHT, 366);
+	}
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	private static BookingRequest booking(LocalDate dateFrom, LocalDate dateTo, int guestCount) {
+		return new BookingRequest("1", dateFrom, dateTo, guestCount, false);
+	}
+
+	@Test
+	void should_ReportNightlyOccupancyAndRevenue_When_StaysOverlapWindow() {
+		// given
+		BookingDAO bookingDAO = new BookingDAO();
+		bookingDAO.save(booking(LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 04), 2));
+		bookingDAO.save(booking(LocalDate.of(2020, 01, 03), LocalDate.of(2020, 01, 05), 3));
+		bookingDAO.save(booking(LocalDate.of(2019, 12, 30), LocalDate.of(2020, 01, 02), 1));
+		bookingDAO.save(booking(LocalDate.of(2020, 02, 01), LocalDate.of(2020, 02, 03), 2));
+		BookingAnalytics analytics = new BookingAnalytics(bookingDAO, roomService, pricingEngine, pool);
+
+		// when
+		OccupancyReport report = analytics.analyze(FIRST_NIGHT, LocalDate.of(2020, 01, 06));
+
+		// then
+		assertArrayEquals(new int[] { 2, 1, 2, 1, 0 }, report.getOccupiedRooms());
+		assertArrayEquals(new double[] { 150.0, 100.0, 235.0, 135.0, 0.0 }, report.getRevenue());
+		assertEquals(620.0, report.getTotalRevenue());
+		assertEquals(0.3, report.getOccupancyRate(), 1e-9);
+		assertEquals(31.0, report.getRevenuePerAvailableRoom(), 1e-9);
+		assertEquals(3, report.getBookingCount());
+		assertEquals(8.0 / 3, report.getAverageStayLength(), 1e-9);
+		assertEquals(2, report.getStayLengthHistogram()[3]);
+		assertEquals(1, report.getStayLengthHistogram()[2]);
+		assertThrows(IllegalArgumentException.class, () -> analytics.analyze(FIRST_NIGHT, FIRST_NIGHT));
+	}
+
+	@Test
+	void should_MatchPricedBookings_When_ManyStaysTalliedInParallel() {
+		// given
+		BookingDAO heapDAO = new BookingDAO(StorageMode.HEAP);
+		BookingDAO columnarDAO = new BookingDAO(StorageMode.COLUMNAR);
+		SplittableRandom random = new SplittableRandom(7);
+		double expectedRevenue = 0;
+		for (int i = 0; i < 200_000; i++) {
+			LocalDate dateFrom = FIRST_NIGHT.plusDays(random.nextInt(300));
+			BookingRequest bookingRequest = booking(dateFrom, dateFrom.plusDays(1 + random.nextInt(40)),
+					1 + random.nextInt(4));
+			heapDAO.save(bookingRequest);
+			columnarDAO.save(bookingRequest);
+			expectedRevenue += pricingEngine.price(bookingRequest);
+		}
+
+		// when
+		OccupancyReport parallel = new BookingAnalytics(columnarDAO, roomService, pricingEngine, pool)
+				.analyze(FIRST_NIGHT, FIRST_NIGHT.plusDays(366));
+		OccupancyReport sequential = new BookingAnalytics(heapDAO, roomService, pricingEngine, new ForkJoinPool(1))
+				.analyze(FIRST_NIGHT, FIRST_NIGHT.plusDays(366));
+
+		// then
+		assertArrayEquals(sequential.getOccupiedRooms(), parallel.getOccupiedRooms());
+		assertArrayEquals(sequential.getRevenue(), parallel.getRevenue());
+		assertArrayEquals(sequential.getStayLengthHistogram(), parallel.getStayLengthHistogram());
+		assertEquals(200_000, parallel.getBookingCount());
+		assertEquals(expectedRevenue, parallel.getTotalRevenue(), 1e-3);
+	}
+
+}
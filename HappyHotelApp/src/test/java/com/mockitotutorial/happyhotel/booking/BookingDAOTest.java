@@ -0,0 +1,277 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BookingDAOTest {
+
+	private BookingDAO bookingDAO;
+
+	@BeforeEach
+	void setup() {
+		this.bookingDAO = new BookingDAO();
+	}
+
+	private static BookingRequest booking(String userId, String roomId, LocalDate dateFrom) {
+		BookingRequest bookingRequest = new BookingRequest(userId, dateFrom, dateFrom.plusDays(2), 2, false);
+		bookingRequest.setRoomId(roomId);
+		return bookingRequest;
+	}
+
+	@Test
+	void should_FindBookings_When_QueriedByUserRoomAndDate() {
+		// given
+		String first = bookingDAO.save(booking("1", "1.1", LocalDate.of(2020, 01, 01)));
+		String second = bookingDAO.save(booking("1", "1.2", LocalDate.of(2020, 01, 03)));
+		String third = bookingDAO.save(booking("2", "1.1", LocalDate.of(2020, 01, 05)));
+
+		// when
+		Map<String, BookingRequest> byUser = bookingDAO.findByUserId("1");
+		Map<String, BookingRequest> byRoom = bookingDAO.findByRoomId("1.1");
+		Map<String, BookingRequest> byDate = bookingDAO.findByDateFrom(LocalDate.of(2020, 01, 02),
+				LocalDate.of(2020, 01, 05));
+
+		// then
+		assertEquals(2, byUser.size());
+		assertTrue(byUser.containsKey(first) && byUser.containsKey(second));
+		assertEquals(2, byRoom.size());
+		assertTrue(byRoom.containsKey(first) && byRoom.containsKey(third));
+		assertEquals(1, byDate.size());
+		assertTrue(byDate.containsKey(second));
+	}
+
+	@Test
+	void should_RemoveFromIndexes_When_BookingDeleted() {
+		// given
+		String id = bookingDAO.save(booking("1", "1.1", LocalDate.of(2020, 01, 01)));
+
+		// when
+		bookingDAO.delete(id);
+
+		// then
+		assertNull(bookingDAO.get(id));
+		assertTrue(bookingDAO.findByUserId("1").isEmpty());
+		assertTrue(bookingDAO.findByRoomId("1.1").isEmpty());
+		assertTrue(bookingDAO.findByDateFrom(LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 02)).isEmpty());
+	}
+
+	@Test
+	void should_KeepIndexesConsistent_When_SavedAndDeletedConcurrently() throws InterruptedException {
+		// given
+		int threads = 8;
+		int bookingsPerThread = 5_000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+
+		// when
+		for (int t = 0; t < threads; t++) {
+			String userId = String.valueOf(t);
+			executor.execute(() -> {
+				for (int i = 0; i < bookingsPerThread; i++) {
+					String id = bookingDAO.save(booking(userId, "1." + i % 10, LocalDate.of(2020, 01, 01).plusDays(i % 30)));
+					if (i % 2 == 0) {
+						bookingDAO.delete(id);
+					}
+				}
+				done.countDown();
+			});
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		// then
+		for (int t = 0; t < threads; t++) {
+			assertEquals(bookingsPerThread / 2, bookingDAO.findByUserId(String.valueOf(t)).size());
+		}
+		assertEquals(threads * bookingsPerThread / 10, bookingDAO.findByRoomId("1.1").size());
+		assertTrue(bookingDAO.findByRoomId("1.0").isEmpty());
+		assertEquals(threads * bookingsPerThread / 2, bookingDAO.findByDateFrom(LocalDate.of(2020, 01, 01),
+				LocalDate.of(2020, 02, 01)).size());
+	}
+
+	@Test
+	void should_RestoreBookings_When_ReopenedFromJournal(@TempDir Path directory) {
+		// given
+		Path file = directory.resolve("bookings.journal");
+		String kept;
+		String deleted;
+		try (Journal journal = new Journal(file, Journal.Durability.GROUP_COMMIT)) {
+			BookingDAO durableDAO = new BookingDAO(journal);
+			kept = durableDAO.save(booking("1", "1.1", LocalDate.of(2020, 01, 01)));
+			deleted = durableDAO.save(booking("2", "1.2", LocalDate.of(2020, 01, 03)));
+			durableDAO.delete(deleted);
+		}
+
+		// when
+		try (Journal journal = new Journal(file, Journal.Durability.GROUP_COMMIT)) {
+			BookingDAO restoredDAO = new BookingDAO(journal);
+
+			// then
+			assertEquals(booking("1", "1.1", LocalDate.of(2020, 01, 01)), restoredDAO.get(kept));
+			assertNull(restoredDAO.get(deleted));
+			assertEquals(1, restoredDAO.findByRoomId("1.1").size());
+		}
+	}
+
+	@Test
+	void should_RestoreBookings_When_JournalCompactedIntoSnapshot(@TempDir Path directory) {
+		// given
+		Path file = directory.resolve("bookings.journal");
+		int bookingCount = 1_000;
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 100)) {
+			BookingDAO durableDAO = new BookingDAO(journal);
+			for (int i = 0; i < bookingCount; i++) {
+				String id = durableDAO.save(booking(String.valueOf(i % 10), "1.1", LocalDate.of(2020, 01, 01)));
+				if (i % 4 == 0) {
+					durableDAO.delete(id);
+				}
+			}
+		}
+
+		// when
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 100)) {
+			BookingDAO restoredDAO = new BookingDAO(journal);
+
+			// then
+			assertEquals(bookingCount * 3 / 4, restoredDAO.findByRoomId("1.1").size());
+			assertTrue(file.resolveSibling("bookings.journal.snapshot").toFile().exists());
+		}
+	}
+
+	@Test
+	void should_FindSameBookings_When_StoredInColumns() {
+		// given
+		BookingDAO heapDAO = new BookingDAO(StorageMode.HEAP);
+		BookingDAO columnarDAO = new BookingDAO(StorageMode.COLUMNAR);
+		List<String> heapIds = new ArrayList<>();
+		List<String> columnarIds = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			BookingRequest bookingRequest = booking(String.valueOf(i % 7), "1." + i % 10,
+					LocalDate.of(2020, 01, 01).plusDays(i % 60));
+			heapIds.add(heapDAO.save(bookingRequest));
+			columnarIds.add(columnarDAO.save(bookingRequest));
+		}
+
+		// when
+		for (int i = 0; i < heapIds.size(); i += 3) {
+			heapDAO.delete(heapIds.get(i));
+			columnarDAO.delete(columnarIds.get(i));
+		}
+
+		// then
+		assertEquals(heapDAO.size(), columnarDAO.size());
+		for (int i = 0; i < heapIds.size(); i++) {
+			assertEquals(heapDAO.get(heapIds.get(i)), columnarDAO.get(columnarIds.get(i)));
+		}
+		assertEquals(heapDAO.findByUserId("3").size(), columnarDAO.findByUserId("3").size());
+		assertEquals(heapDAO.findByRoomId("1.4").size(), columnarDAO.findByRoomId("1.4").size());
+		Map<String, BookingRequest> byDate = columnarDAO.findByDateFrom(LocalDate.of(2020, 01, 10),
+				LocalDate.of(2020, 01, 20));
+		assertEquals(heapDAO.findByDateFrom(LocalDate.of(2020, 01, 10), LocalDate.of(2020, 01, 20)).size(),
+				byDate.size());
+		LocalDate previous = LocalDate.MIN;
+		for (BookingRequest bookingRequest : byDate.values()) {
+			assertFalse(bookingRequest.getDateFrom().isBefore(previous));
+			previous = bookingRequest.getDateFrom();
+		}
+		assertEquals(heapDAO.size(), columnarDAO.findByDateFrom(LocalDate.MIN, LocalDate.MAX).size());
+		assertNull(columnarDAO.get("not an id"));
+		assertTrue(columnarDAO.findByUserId("unknown").isEmpty());
+	}
+
+	@Test
+	void should_ReuseDictionaryCodes_When_ColumnarBookingsReplaced() {
+		// given
+		ColumnarBookingStore store = new ColumnarBookingStore();
+		IdGenerator idGenerator = TimeOrderedIdGenerator.INSTANCE;
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			ids.add(idGenerator.nextIdString());
+			store.put(ids.get(i), booking("user" + i, "room" + i % 10, LocalDate.of(2020, 01, 01)));
+		}
+		int dictionarySize = store.getDictionarySize();
+
+		// when
+		for (int i = 0; i < ids.size(); i++) {
+			store.remove(ids.get(i));
+			store.put(idGenerator.nextIdString(), booking("guest" + i, "room" + i % 10, LocalDate.of(2020, 01, 02)));
+		}
+		store.put(ids.get(0), booking("guest1", "room1", LocalDate.of(2020, 01, 03)));
+		store.put(ids.get(0), booking("guest2", "room2", LocalDate.of(2020, 01, 03)));
+
+		// then
+		assertEquals(dictionarySize, store.getDictionarySize());
+		assertTrue(store.findByUserId("user1").isEmpty());
+		assertEquals(1, store.findByUserId("guest1").size());
+		assertEquals(2, store.findByUserId("guest2").size());
+		assertEquals(100, store.findByRoomId("room1").size());
+		assertEquals(101, store.findByRoomId("room2").size());
+		assertEquals(1, store.findByDateFrom(LocalDate.of(2020, 01, 03), LocalDate.of(2020, 01, 04)).size());
+		assertEquals(0, store.findByDateFrom(LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 02)).size());
+	}
+
+	@Test
+	void should_RestoreColumnarBookings_When_JournalCompactedIntoSnapshot(@TempDir Path directory) {
+		// given
+		Path file = directory.resolve("bookings.journal");
+		int bookingCount = 1_000;
+		String kept = null;
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 100)) {
+			BookingDAO durableDAO = new BookingDAO(journal, TimeOrderedIdGenerator.INSTANCE, StorageMode.COLUMNAR);
+			for (int i = 0; i < bookingCount; i++) {
+				String id = durableDAO.save(booking(String.valueOf(i % 10), "1.1", LocalDate.of(2020, 01, 01)));
+				if (i % 4 == 0) {
+					durableDAO.delete(id);
+				} else {
+					kept = id;
+				}
+			}
+		}
+
+		// when
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 100)) {
+			BookingDAO restoredDAO = new BookingDAO(journal, TimeOrderedIdGenerator.INSTANCE, StorageMode.COLUMNAR);
+
+			// then
+			assertEquals(bookingCount * 3 / 4, restoredDAO.size());
+			assertEquals(bookingCount * 3 / 4, restoredDAO.findByRoomId("1.1").size());
+			assertEquals(booking("9", "1.1", LocalDate.of(2020, 01, 01)), restoredDAO.get(kept));
+		}
+	}
+
+	@Test
+	void should_RestorePayments_When_ReopenedFromJournal(@TempDir Path directory) {
+		// given
+		Path file = directory.resolve("payments.journal");
+		BookingRequest bookingRequest = booking("1", "1.1", LocalDate.of(2020, 01, 01));
+		String paymentId;
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC)) {
+			paymentId = new PaymentService(journal).pay(bookingRequest, 100.0);
+		}
+
+		// when
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC)) {
+			PaymentService restoredPaymentService = new PaymentService(journal);
+
+			// then
+			assertEquals(100.0, restoredPaymentService.getPayment(paymentId));
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CurrencyConverterTest {
+
+	private static final List<String> RATES = Arrays.asList(
+			"# units per US dollar",
+			"EUR=0.85", "GBP=0.79", "JPY=151.37", "KWD=0.3075", "CHF=0.88", "CAD=1.36", "AUD=1.52", "NZD=1.66",
+			"SEK=10.61", "NOK=10.74", "DKK=6.88", "PLN=3.96", "CZK=23.12", "HUF=361.4", "RON=4.58", "TRY=32.2",
+			"CNY=7.24", "HKD=7.82", "SGD=1.35", "KRW=1372.5", "INR=83.4", "IDR=15870", "THB=36.6", "MYR=4.72",
+			"PHP=57.3", "ZAR=18.7", "BRL=5.05", "MXN=16.9", "CLP=942", "AED=3.6725", "SAR=3.75", "ILS=3.71");
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void should_ConvertToEuro_When_DefaultRatesUsed() {
+		// given
+		CurrencyConverter currencyConverter = new CurrencyConverter();
+
+		// when
+		double actual = currencyConverter.convert(400.0, "EUR");
+
+		// then
+		assertEquals(CurrencyConverter.toEuro(400.0), actual);
+		assertEquals(40_000, currencyConverter.convert(40_000L, "USD"));
+	}
+
+	@Test
+	void should_ConvertInMinorUnits_When_RatesFileLoaded() throws IOException {
+		// given
+		Path ratesFile = Files.write(tempDir.resolve("rates.properties"), RATES, StandardCharsets.UTF_8);
+
+		// when
+		CurrencyConverter currencyConverter = new CurrencyConverter(ratesFile);
+
+		// then
+		// 32 listed currencies plus the USD base
+		assertEquals(33, currencyConverter.getRates().getCurrencies().size());
+		assertEquals(34_425, currencyConverter.convert(40_500L, "EUR"));
+		// yen have no minor unit: 123.45 USD * 151.37 = 18686.6265
+		assertEquals(18_687, currencyConverter.convert(12_345L, "JPY"));
+		// dinar have three decimals: 123.45 USD * 0.3075 = 37.960875
+		assertEquals(37_961, currencyConverter.convert(12_345L, "KWD"));
+		assertEquals(37.961, currencyConverter.convert(123.45, "KWD"));
+		// 60,000 USD * 15870 overflows a long once scaled by 10^8
+		assertEquals(95_220_000_000L, currencyConverter.convert(6_000_000L, "IDR"));
+		assertEquals(-95_220_000_000L, currencyConverter.convert(-6_000_000L, "IDR"));
+		assertEquals(1_587_000_000_000_000L, currencyConverter.convert(100_000_000_000L, "IDR"));
+		assertThrows(IllegalArgumentException.class, () -> currencyConverter.convert(100L, "XYZ"));
+	}
+
+	@Test
+	void should_KeepSnapshot_When_RatesReplaced() throws IOException {
+		// given
+		Path ratesFile = Files.write(tempDir.resolve("rates.properties"), RATES, StandardCharsets.UTF_8);
+		CurrencyConverter currencyConverter = new CurrencyConverter(ratesFile);
+		CurrencyConverter.Rates before = currencyConverter.getRates();
+		int euro = before.indexOf("EUR");
+
+		// when
+		Files.write(ratesFile, Arrays.asList("EUR=0.9"), StandardCharsets.UTF_8);
+		currencyConverter.load(ratesFile);
+
+		// then
+		assertEquals(85, before.convert(100L, euro));
+		assertEquals(90, currencyConverter.convert(100L, "EUR"));
+		assertThrows(IllegalArgumentException.class, () -> currencyConverter.convert(100L, "GBP"));
+	}
+
+	@Test
+	void should_KeepCurrentRates_When_RatesFileInvalid() throws IOException {
+		// given
+		CurrencyConverter currencyConverter = new CurrencyConverter();
+		Path ratesFile = Files.write(tempDir.resolve("rates.properties"), Arrays.asList("EUR=abc"),
+				StandardCharsets.UTF_8);
+		Path unknownFile = Files.write(tempDir.resolve("unknown.properties"), Arrays.asList("ZZZ=1.0"),
+				StandardCharsets.UTF_8);
+
+		// when
+		assertThrows(IOException.class, () -> currencyConverter.load(ratesFile));
+		assertThrows(IOException.class, () -> currencyConverter.load(unknownFile));
+
+		// then
+		assertEquals(85, currencyConverter.convert(100L, "EUR"));
+		assertTrue(currencyConverter.getRates().getCurrencies().contains("USD"));
+	}
+
+	@Test
+	void should_ConvertToEuroWithLoadedRates_When_DefaultRatesReplaced() throws IOException {
+		// given
+		Path ratesFile = Files.write(tempDir.resolve("rates.properties"), Arrays.asList("EUR=0.5"),
+				StandardCharsets.UTF_8);
+		Path defaultsFile = Files.write(tempDir.resolve("defaults.properties"), Arrays.asList("EUR=0.85"),
+				StandardCharsets.UTF_8);
+
+		// when
+		CurrencyConverter.DEFAULT.load(ratesFile);
+
+		// then
+		try {
+			assertEquals(200.0, CurrencyConverter.toEuro(400.0));
+		} finally {
+			CurrencyConverter.DEFAULT.load(defaultsFile);
+		}
+		assertEquals(340.0, CurrencyConverter.toEuro(400.0));
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class IdGeneratorTest {
+
+	private final IdGenerator idGenerator = new TimeOrderedIdGenerator();
+
+	@Test
+	void should_GenerateUniqueIds_When_ManyThreadsGenerate() throws Exception {
+		// given
+		int threads = 8;
+		int idsPerThread = 50_000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<long[]>> futures = new ArrayList<>();
+
+		// when
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				long[] ids = new long[idsPerThread];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = idGenerator.nextId();
+				}
+				return ids;
+			}));
+		}
+
+		// then
+		Set<Long> unique = new HashSet<>();
+		for (Future<long[]> future : futures) {
+			long[] ids = future.get();
+			for (int i = 0; i < ids.length; i++) {
+				assertTrue(unique.add(ids[i]));
+				if (i > 0) {
+					assertTrue(ids[i] > ids[i - 1]);
+				}
+			}
+		}
+		assertEquals(threads * idsPerThread, unique.size());
+		executor.shutdown();
+	}
+
+	@Test
+	void should_KeepNumericOrder_When_IdsFormatted() {
+		// given
+		long[] ids = { 0, 1, 31, 32, idGenerator.nextId(), Long.MAX_VALUE, -1 };
+
+		// when
+		List<String> formatted = new ArrayList<>();
+		for (long id : ids) {
+			formatted.add(IdGenerator.format(id));
+		}
+
+		// then
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(13, formatted.get(i).length());
+			assertEquals(ids[i], IdGenerator.parse(formatted.get(i)));
+			if (i > 0) {
+				assertTrue(formatted.get(i).compareTo(formatted.get(i - 1)) > 0);
+			}
+		}
+	}
+
+	@Test
+	void should_ThrowException_When_ParsingInvalidId() {
+		// when
+		assertThrows(IllegalArgumentException.class, () -> IdGenerator.parse("0"));
+		assertThrows(IllegalArgumentException.class, () -> IdGenerator.parse("ZZZZZZZZZZZZZ"));
+		assertThrows(IllegalArgumentException.class, () -> IdGenerator.parse("000000000000U"));
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTest {
+
+	@Test
+	void should_CompactOnce_When_CompactionDueInSeveralThreads(@TempDir Path directory) throws InterruptedException {
+		// given
+		Path file = directory.resolve("rooms.journal");
+		AtomicInteger snapshots = new AtomicInteger();
+		CountDownLatch compacting = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 1)) {
+			journal.append(new byte[] { 1 }, () -> {
+			});
+			journal.append(new byte[] { 1, 1 }, () -> {
+			});
+			Thread first = new Thread(() -> journal.compactIfDue(() -> {
+				snapshots.incrementAndGet();
+				compacting.countDown();
+				awaitQuietly(release);
+				return Collections.singletonList(new byte[] { 2 });
+			}));
+
+			// when
+			first.start();
+			assertTrue(compacting.await(5, TimeUnit.SECONDS));
+			journal.compactIfDue(() -> {
+				snapshots.incrementAndGet();
+				return Collections.singletonList(new byte[] { 3 });
+			});
+			release.countDown();
+			first.join(5_000);
+			journal.append(new byte[] { 4 }, () -> {
+			});
+		}
+
+		// then
+		assertEquals(1, snapshots.get());
+		List<byte[]> records = new ArrayList<>();
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 1)) {
+			journal.replay(records::add);
+		}
+		assertEquals(2, records.size());
+		assertArrayEquals(new byte[] { 2 }, records.get(0));
+		assertArrayEquals(new byte[] { 4 }, records.get(1));
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
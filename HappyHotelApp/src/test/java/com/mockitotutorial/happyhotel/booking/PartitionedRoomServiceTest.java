@@ -0,0 +1,166 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PartitionedRoomServiceTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+	private static final Clock CLOCK = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+	private ForkJoinPool pool;
+
+	private PartitionedRoomService roomService;
+
+	@BeforeEach
+	void setup() {
+		Map<String, List<Room>> roomsByProperty = new LinkedHashMap<>();
+		roomsByProperty.put("lisbon", Arrays.asList(new Room("L1", 2), new Room("L2", 5)));
+		roomsByProperty.put("porto", Arrays.asList(new Room("P1", 2), new Room("P2", 3)));
+		roomsByProperty.put("faro", Arrays.asList(new Room("F1", 4)));
+		this.pool = new ForkJoinPool(3);
+		this.roomService = new PartitionedRoomService(roomsByProperty, CLOCK, 365, AllocationPolicy.BEST_FIT, pool);
+	}
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	private static BookingRequest request(int guestCount, String propertyId) {
+		BookingRequest bookingRequest = new BookingRequest("1", TODAY, TODAY.plusDays(2), guestCount, false);
+		bookingRequest.setPropertyId(propertyId);
+		return bookingRequest;
+	}
+
+	@Test
+	void should_SearchOnlyPinnedProperty_When_PropertyGiven() {
+		// when
+		String roomId = roomService.findAvailableRoomId(request(3, "lisbon"));
+
+		// then
+		assertEquals("L2", roomId);
+		assertThrows(BusinessException.class, () -> roomService.findAvailableRoomId(request(6, "porto")));
+		assertThrows(BusinessException.class, () -> roomService.findAvailableRoomId(request(2, "madrid")));
+	}
+
+	@Test
+	void should_TakeBestRoomAcrossProperties_When_PropertyNotPinned() {
+		// given
+		roomService.bookRoom("P2", TODAY, TODAY.plusDays(5));
+
+		// when
+		String first = roomService.claimAvailableRoom(request(3, null));
+		String second = roomService.claimAvailableRoom(request(3, null));
+
+		// then
+		assertEquals("F1", first);
+		assertEquals("L2", second);
+		assertThrows(BusinessException.class, () -> roomService.claimAvailableRoom(request(3, null)));
+		assertEquals("lisbon", roomService.getPropertyId(second));
+	}
+
+	@Test
+	void should_ClaimAcrossPartitions_When_BatchNotPinned() {
+		// given
+		List<BookingRequest> bookingRequests = Arrays.asList(request(2, null), request(2, null), request(2, null),
+				request(2, "porto"), request(5, null));
+
+		// when
+		String[] roomIds = roomService.claimAvailableRooms(bookingRequests);
+
+		// then
+		assertEquals(5, Arrays.stream(roomIds).filter(roomId -> roomId != null).distinct().count());
+		assertEquals("porto", roomService.getPropertyId(roomIds[3]));
+		assertNull(roomService.claimAvailableRooms(Arrays.asList(request(2, "faro")))[0]);
+		assertEquals(0, roomService.getAvailablePlaceCount());
+		assertTrue(roomService.getAvailableRooms().isEmpty());
+	}
+
+	@Test
+	void should_LeaveOnlyUnknownPropertyUnclaimed_When_BatchPinsUnknownProperty() {
+		// given
+		List<BookingRequest> bookingRequests = Arrays.asList(request(2, "lisbon"), request(2, "madrid"),
+				request(3, "porto"));
+
+		// when
+		String[] roomIds = roomService.claimAvailableRooms(bookingRequests);
+
+		// then
+		assertEquals("L1", roomIds[0]);
+		assertNull(roomIds[1]);
+		assertEquals("P2", roomIds[2]);
+		assertEquals(11, roomService.getAvailablePlaceCount());
+	}
+
+	@Test
+	void should_SumPartitions_When_PlacesCounted() {
+		// when
+		roomService.bookRoom("L1");
+		roomService.bookRoom("F1");
+
+		// then
+		assertEquals(5, roomService.getRoomCount());
+		assertEquals(10, roomService.getAvailablePlaceCount());
+		assertEquals(2, roomService.getAvailablePlaceCount(2));
+		assertEquals(3, roomService.getAvailableRooms().size());
+		roomService.unbookRoom("F1");
+		assertTrue(roomService.isRoomAvailable("F1", TODAY, TODAY.plusDays(1)));
+		assertThrows(BusinessException.class, () -> roomService.bookRoom("X9"));
+	}
+
+	@Test
+	void should_RouteHoldTokenToItsProperty_When_HoldConfirmedOrReleased() {
+		// given
+		String confirmed = roomService.hold("P2", TODAY, TODAY.plusDays(2), Duration.ofMinutes(5));
+		String released = roomService.hold("F1", TODAY, TODAY.plusDays(2), Duration.ofMinutes(5));
+
+		// when
+		assertEquals(2, roomService.getHoldCount());
+		roomService.confirm(confirmed);
+		roomService.release(released);
+
+		// then
+		assertEquals(0, roomService.getHoldCount());
+		assertEquals("F1", roomService.findAvailableRoomId(request(3, null)));
+		assertThrows(BusinessException.class, () -> roomService.confirm(confirmed));
+	}
+
+	@Test
+	void should_StartWriterPerPartition_When_SingleWritersRequested() {
+		// given
+		long writersBefore = countWriters();
+
+		// when
+		PartitionedRoomService singleWriters = roomService.withSingleWriters();
+		String[] roomIds = singleWriters.claimAvailableRooms(Arrays.asList(request(2, "lisbon"), request(2, "porto"),
+				request(4, null)));
+
+		// then
+		assertEquals(writersBefore + 3, countWriters());
+		assertEquals(Arrays.asList("L1", "P1", "L2"), Arrays.asList(roomIds));
+		assertEquals(7, roomService.getAvailablePlaceCount());
+		singleWriters.close();
+	}
+
+	private static long countWriters() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.isAlive() && thread.getName().equals("room-writer")).count();
+	}
+}
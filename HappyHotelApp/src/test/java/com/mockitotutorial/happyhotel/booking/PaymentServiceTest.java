@@ -0,0 +1,110 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PaymentServiceTest {
+
+	private PaymentService paymentService;
+
+	private BookingRequest bookingRequest;
+
+	@BeforeEach
+	void setup() {
+		this.paymentService = new PaymentService();
+		this.bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05), 2,
+				true);
+	}
+
+	@Test
+	void should_StorePaymentsInLedger_When_ManyPaymentsMade() {
+		// given
+		List<String> ids = new ArrayList<>();
+
+		// when
+		for (int i = 0; i < 10_000; i++) {
+			ids.add(paymentService.pay(bookingRequest, i % 200 + 0.25));
+		}
+
+		// then
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i % 200 + 0.25, paymentService.getPayment(ids.get(i)));
+		}
+		assertNull(paymentService.getPayment(IdGenerator.format(0)));
+	}
+
+	@Test
+	void should_SettleFullBatch_When_BatchSizeReached() throws InterruptedException, ExecutionException {
+		// given
+		PaymentBatcher paymentBatcher = new PaymentBatcher(paymentService, 4, 1, TimeUnit.HOURS);
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+
+		// when
+		for (int i = 0; i < 4; i++) {
+			futures.add(paymentBatcher.pay(bookingRequest, 100.0));
+		}
+
+		// then
+		for (CompletableFuture<String> future : futures) {
+			assertTrue(future.isDone());
+			assertEquals(100.0, paymentService.getPayment(future.get()));
+		}
+		paymentBatcher.close();
+	}
+
+	@Test
+	void should_SettlePartialBatch_When_MaxDelayElapsed() throws Exception {
+		// given
+		PaymentBatcher paymentBatcher = new PaymentBatcher(paymentService, 100, 10, TimeUnit.MILLISECONDS);
+
+		// when
+		CompletableFuture<String> future = paymentBatcher.pay(bookingRequest, 50.0);
+
+		// then
+		assertFalse(future.isDone());
+		assertEquals(50.0, paymentService.getPayment(future.get(5, TimeUnit.SECONDS)));
+		paymentBatcher.close();
+	}
+
+	@Test
+	void should_FailFuture_When_PaymentTooHigh() {
+		// given
+		PaymentBatcher paymentBatcher = new PaymentBatcher(paymentService);
+
+		// when
+		CompletableFuture<String> future = paymentBatcher.pay(bookingRequest, 400.0);
+
+		// then
+		ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+		assertTrue(exception.getCause() instanceof UnsupportedOperationException);
+		paymentBatcher.close();
+	}
+
+	@Test
+	void should_FailFuture_When_BatcherClosed() {
+		// given
+		PaymentBatcher paymentBatcher = new PaymentBatcher(paymentService, 100, 1, TimeUnit.HOURS);
+		paymentBatcher.close();
+
+		// when
+		CompletableFuture<String> future = paymentBatcher.pay(bookingRequest, 50.0);
+
+		// then
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+		assertTrue(exception.getCause() instanceof IllegalStateException);
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PricingEngineTest {
+
+	private static final LocalDate FIRST_NIGHT = LocalDate.of(2020, 01, 01);
+
+	private PricingEngine pricingEngine;
+
+	@BeforeEach
+	void setup() {
+		RatePlan ratePlan = new RatePlan(50.0);
+		ratePlan.addSeason(LocalDate.of(2020, 07, 01), LocalDate.of(2020, 9, 01), 150);
+		ratePlan.setWeekendPercent(120);
+		ratePlan.setGuestTierPercent(3, 90);
+		this.pricingEngine = new PricingEngine(ratePlan, FIRST_NIGHT, 366);
+	}
+
+	@Test
+	void should_CalculateFlatPrice_When_DefaultEngineUsed() {
+		// given
+		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+				LocalDate.of(2020, 01, 05), 2, false);
+
+		// when
+		double actual = new PricingEngine().price(bookingRequest);
+
+		// then
+		assertEquals(4 * 2 * 50.0, actual);
+	}
+
+	@Test
+	void should_ApplySeasonWeekendAndGuestTier_When_Quoted() {
+		// given
+		List<BookingRequest> bookingRequests = Arrays.asList(
+				// Wed, Thu, Fri, Sat: 50 + 50 + 60 + 60 per guest
+				new BookingRequest("1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05), 2, false),
+				// Wed, Thu in season: 75 + 75 per guest, 90% for three guests
+				new BookingRequest("1", LocalDate.of(2020, 07, 01), LocalDate.of(2020, 07, 03), 3, false),
+				// last night of the table plus one night at the base rate
+				new BookingRequest("1", LocalDate.of(2020, 12, 31), LocalDate.of(2021, 01, 02), 1, false),
+				// entirely after the table
+				new BookingRequest("1", LocalDate.of(2021, 06, 01), LocalDate.of(2021, 06, 03), 1, false));
+
+		// when
+		double[] usd = pricingEngine.quote(bookingRequests, "USD");
+		double[] eur = pricingEngine.quote(bookingRequests, "EUR");
+
+		// then
+		assertArrayEquals(new double[] { 440.0, 405.0, 100.0, 100.0 }, usd, 1e-9);
+		assertArrayEquals(new double[] { 374.0, 344.25, 85.0, 85.0 }, eur, 1e-9);
+	}
+
+	@Test
+	void should_UseNewRates_When_PlanUpdated() {
+		// given
+		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 02, 03),
+				LocalDate.of(2020, 02, 05), 2, false);
+
+		// when
+		pricingEngine.update(new RatePlan(80.0), FIRST_NIGHT, 366);
+
+		// then
+		assertEquals(2 * 2 * 80.0, pricingEngine.price(bookingRequest));
+	}
+
+	@Test
+	void should_ThrowException_When_CurrencyNotSupported() {
+		// given
+		List<BookingRequest> bookingRequests = Arrays.asList(new BookingRequest("1", LocalDate.of(2020, 01, 01),
+				LocalDate.of(2020, 01, 05), 2, false));
+
+		// when / then
+		assertThrows(IllegalArgumentException.class, () -> pricingEngine.quote(bookingRequests, "XYZ"));
+	}
+
+}
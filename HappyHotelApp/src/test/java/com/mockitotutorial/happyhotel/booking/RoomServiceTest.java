@@ -0,0 +1,609 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RoomServiceTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+	private static final Clock CLOCK = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+	private static final List<Room> ROOMS = Arrays.asList(
+			new Room("1.1", 2),
+			new Room("1.2", 2),
+			new Room("1.3", 5),
+			new Room("2.1", 3),
+			new Room("2.2", 4));
+
+	private RoomService roomService;
+
+	@BeforeEach
+	void setup() {
+		this.roomService = new RoomService(ROOMS, CLOCK);
+	}
+
+	@Test
+	void should_FindRoomWithMatchingCapacity_When_RoomAvailable() {
+		// given
+		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+				LocalDate.of(2020, 01, 05), 3, false);
+
+		// when
+		String roomId = roomService.findAvailableRoomId(bookingRequest);
+
+		// then
+		assertEquals("2.1", roomId);
+	}
+
+	@Test
+	void should_ReturnNoRoom_When_TryingFullyBookedNights() {
+		// given
+		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+				LocalDate.of(2020, 01, 05), 5, false);
+		roomService.bookRoom("1.3", LocalDate.of(2020, 01, 03), LocalDate.of(2020, 01, 04));
+
+		// when
+		String foundRoomId = roomService.tryFindAvailableRoom(bookingRequest);
+		String claimedRoomId = roomService.tryClaimAvailableRoom(bookingRequest);
+		boolean booked = roomService.tryBookRoom("1.3", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05));
+
+		// then
+		assertNull(foundRoomId);
+		assertNull(claimedRoomId);
+		assertFalse(booked);
+		assertTrue(roomService.tryBookRoom("1.3", LocalDate.of(2020, 01, 04), LocalDate.of(2020, 01, 05)));
+		assertEquals("2.1", roomService.tryClaimAvailableRoom(new BookingRequest("1", LocalDate.of(2020, 01, 01),
+				LocalDate.of(2020, 01, 05), 3, false)));
+	}
+
+	@Test
+	void should_NotOfferRoom_When_RoomBookedForOverlappingNights() {
+		// given
+		RoomService roomService = new RoomService(ROOMS, CLOCK, AllocationPolicy.EXACT_MATCH);
+		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 04),
+				LocalDate.of(2020, 01, 06), 3, false);
+
+		// when
+		roomService.bookRoom("2.1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05));
+
+		// then
+		assertThrows(BusinessException.class, () -> roomService.findAvailableRoomId(bookingRequest));
+		assertEquals(4, roomService.getAvailableRooms().size());
+		assertEquals(5, roomService.getRoomCount());
+	}
+
+	@Test
+	void should_OfferSmallestLargerRoom_When_ExactCapacityTaken() {
+		// given
+		roomService.bookRoom("2.1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05));
+		BookingRequest partyOfThree = new BookingRequest("1", LocalDate.of(2020, 01, 02),
+				LocalDate.of(2020, 01, 04), 3, false);
+		BookingRequest partyOfOne = new BookingRequest("1", LocalDate.of(2020, 01, 02),
+				LocalDate.of(2020, 01, 04), 1, false);
+		BookingRequest partyOfSix = new BookingRequest("1", LocalDate.of(2020, 01, 02),
+				LocalDate.of(2020, 01, 04), 6, false);
+
+		// when
+		String threeRoomId = roomService.claimAvailableRoom(partyOfThree);
+		String oneRoomId = roomService.findAvailableRoomId(partyOfOne);
+
+		// then
+		assertEquals("2.2", threeRoomId);
+		assertEquals("1.1", oneRoomId);
+		assertEquals("1.3", roomService.findAvailableRoomId(partyOfThree));
+		assertThrows(BusinessException.class, () -> roomService.findAvailableRoomId(partyOfSix));
+		assertEquals(AllocationPolicy.BEST_FIT, roomService.getAllocationPolicy());
+	}
+
+	@Test
+	void should_OfferRoom_When_StaysDoNotOverlap() {
+		// given
+		roomService.bookRoom("2.1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05));
+		BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 05),
+				LocalDate.of(2020, 01, 07), 3, false);
+
+		// when
+		String roomId = roomService.findAvailableRoomId(bookingRequest);
+
+		// then
+		assertEquals("2.1", roomId);
+	}
+
+	@Test
+	void should_OfferRoomAgain_When_RoomUnbooked() {
+		// given
+		roomService.bookRoom("1.3");
+
+		// when
+		roomService.unbookRoom("1.3");
+
+		// then
+		assertEquals(5, roomService.getAvailableRooms().size());
+	}
+
+	@Test
+	void should_ThrowException_When_RoomBookedTwice() {
+		// given
+		roomService.bookRoom("1.1");
+
+		// when / then
+		assertThrows(BusinessException.class, () -> roomService.bookRoom("1.1"));
+		assertThrows(BusinessException.class, () -> roomService.unbookRoom("1.2"));
+		assertThrows(BusinessException.class, () -> roomService.bookRoom("9.9"));
+	}
+
+	@Test
+	void should_ThrowException_When_DatesOutsideCalendar() {
+		assertThrows(BusinessException.class,
+				() -> roomService.bookRoom("1.1", LocalDate.of(2019, 12, 30), LocalDate.of(2020, 01, 02)));
+		assertThrows(BusinessException.class,
+				() -> roomService.bookRoom("1.1", LocalDate.of(2020, 01, 05), LocalDate.of(2020, 01, 05)));
+		assertThrows(BusinessException.class,
+				() -> roomService.bookRoom("1.1", LocalDate.of(2020, 01, 05), LocalDate.of(2030, 01, 05)));
+	}
+
+	@Test
+	void should_ReturnNoRoom_When_RequestedDatesOutsideCalendar() {
+		// given
+		BookingRequest before = new BookingRequest("1", LocalDate.of(2019, 12, 30), TODAY.plusDays(1), 2, false);
+		BookingRequest after = new BookingRequest("2", TODAY.plusDays(10), LocalDate.of(2030, 01, 05), 2, false);
+		BookingRequest inside = new BookingRequest("3", TODAY, TODAY.plusDays(1), 2, false);
+
+		// when
+		String[] roomIds = roomService.claimAvailableRooms(Arrays.asList(before, after, inside));
+
+		// then
+		assertNull(roomService.tryFindAvailableRoom(before));
+		assertNull(roomService.tryClaimAvailableRoom(after));
+		assertEquals(Arrays.asList(null, null, "1.1"), Arrays.asList(roomIds));
+		BusinessException exception = assertThrows(BusinessException.class, () -> roomService.claimAvailableRoom(after));
+		assertEquals(0, exception.getStackTrace().length);
+	}
+
+	@Test
+	void should_RollCalendarForward_When_ClockPassesMidpoint() {
+		// given
+		AtomicReference<Instant> now = new AtomicReference<>(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC));
+		Clock clock = mock(Clock.class);
+		when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+		when(clock.instant()).thenAnswer(invocation -> now.get());
+		when(clock.millis()).thenAnswer(invocation -> now.get().toEpochMilli());
+		RoomService rollingRoomService = new RoomService(ROOMS, clock, 10);
+		rollingRoomService.bookRoom("1.1", TODAY.plusDays(3), TODAY.plusDays(7));
+
+		// when
+		now.set(now.get().plus(Duration.ofDays(6)));
+
+		// then
+		assertEquals(14, rollingRoomService.getAvailablePlaceCount());
+		rollingRoomService.bookRoom("1.2", TODAY.plusDays(12), TODAY.plusDays(15));
+		assertFalse(rollingRoomService.isRoomAvailable("1.2", TODAY.plusDays(14), TODAY.plusDays(15)));
+		rollingRoomService.unbookRoom("1.1", TODAY.plusDays(3), TODAY.plusDays(7));
+		assertEquals(16, rollingRoomService.getAvailablePlaceCount());
+		now.set(now.get().plus(Duration.ofDays(100)));
+		assertEquals(16, rollingRoomService.getAvailablePlaceCount());
+		assertEquals("1.1", rollingRoomService.claimAvailableRoom(
+				new BookingRequest("1", TODAY.plusDays(106), TODAY.plusDays(110), 2, false)));
+		rollingRoomService.close();
+	}
+
+	@Test
+	void should_KeepRoomOnlyWhileHeld_When_HoldConfirmedOrReleased() {
+		// given
+		String confirmed = roomService.hold("1.1", TODAY, TODAY.plusDays(2), Duration.ofMinutes(5));
+		String released = roomService.hold("1.2", TODAY, TODAY.plusDays(2), Duration.ofMinutes(5));
+
+		// when
+		roomService.confirm(confirmed);
+		roomService.release(released);
+
+		// then
+		assertFalse(roomService.isRoomAvailable("1.1", TODAY, TODAY.plusDays(2)));
+		assertTrue(roomService.isRoomAvailable("1.2", TODAY, TODAY.plusDays(2)));
+		assertEquals(0, roomService.getHoldCount());
+		assertThrows(BusinessException.class, () -> roomService.release(confirmed));
+		assertThrows(BusinessException.class, () -> roomService.hold("1.1", TODAY, TODAY.plusDays(1),
+				Duration.ofMinutes(5)));
+	}
+
+	// expiry: every hold is released by the timing wheel shortly after its ttl, none is confirmable afterwards
+	@Test
+	void should_ReleaseRooms_When_HoldsExpire() throws InterruptedException {
+		// given
+		int roomCount = 1_000;
+		int nights = 30;
+		List<Room> rooms = new ArrayList<>(roomCount);
+		for (int i = 0; i < roomCount; i++) {
+			rooms.add(new Room(String.valueOf(i), 2));
+		}
+		RoomService holdingRoomService = new RoomService(rooms, CLOCK, nights);
+		List<String> tokens = new ArrayList<>(roomCount * nights);
+
+		// when
+		for (int i = 0; i < roomCount; i++) {
+			for (int night = 0; night < nights; night++) {
+				tokens.add(holdingRoomService.hold(String.valueOf(i), TODAY.plusDays(night),
+						TODAY.plusDays(night + 1), Duration.ofMillis(50 + night)));
+			}
+		}
+
+		// then
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (holdingRoomService.getHoldCount() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, holdingRoomService.getHoldCount());
+		assertEquals(2 * roomCount, holdingRoomService.getAvailablePlaceCount());
+		assertThrows(BusinessException.class, () -> holdingRoomService.confirm(tokens.get(0)));
+	}
+
+	// scaling: 100k rooms with a week-long stay every week of the year, then every room freed for one week
+	@Test
+	void should_TrackEveryNight_When_HundredThousandRoomsBookedForAYear() {
+		int roomCount = 100_000;
+		int nights = 365;
+		List<Room> rooms = new ArrayList<>(roomCount);
+		for (int i = 0; i < roomCount; i++) {
+			rooms.add(new Room("R" + i, 1 + i % 5));
+		}
+		RoomService bigRoomService = new RoomService(rooms, CLOCK, nights);
+
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			for (int i = 0; i < roomCount; i++) {
+				String roomId = "R" + i;
+				for (int week = 0; week + 7 <= nights; week += 7) {
+					bigRoomService.bookRoom(roomId, TODAY.plusDays(week), TODAY.plusDays(week + 7));
+				}
+			}
+			for (int i = 0; i < roomCount; i++) {
+				bigRoomService.unbookRoom("R" + i, TODAY.plusDays(140), TODAY.plusDays(147));
+			}
+		});
+
+		assertTrue(bigRoomService.isRoomAvailable("R99999", TODAY.plusDays(140), TODAY.plusDays(147)));
+		assertFalse(bigRoomService.isRoomAvailable("R99999", TODAY.plusDays(139), TODAY.plusDays(141)));
+		assertTrue(bigRoomService.isRoomAvailable("R99999", TODAY.plusDays(364), TODAY.plusDays(365)));
+		assertEquals(0, bigRoomService.getAvailableRooms().size());
+		assertEquals("R2", bigRoomService.findAvailableRoomId(
+				new BookingRequest("1", TODAY.plusDays(141), TODAY.plusDays(143), 3, false)));
+	}
+
+	// stress: every claimed night is counted by its owner, a count above one would mean a double booking
+	@Test
+	void should_NeverDoubleBook_When_RoomsClaimedConcurrently() throws InterruptedException {
+		int roomCount = 200;
+		int nights = 365;
+		int claimsPerRun = 200_000;
+		List<Room> rooms = new ArrayList<>(roomCount);
+		for (int i = 0; i < roomCount; i++) {
+			rooms.add(new Room(String.valueOf(i), 2));
+		}
+
+		for (int threads = 1; threads <= Math.max(4, Runtime.getRuntime().availableProcessors()); threads *= 2) {
+			RoomService sharedRoomService = new RoomService(rooms, CLOCK, nights);
+			AtomicIntegerArray owners = new AtomicIntegerArray(roomCount * nights);
+			AtomicInteger doubleBookings = new AtomicInteger();
+			AtomicInteger claimed = new AtomicInteger();
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			CountDownLatch done = new CountDownLatch(threads);
+			int claimsPerThread = claimsPerRun / threads;
+
+			for (int t = 0; t < threads; t++) {
+				executor.execute(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < claimsPerThread; i++) {
+						int from = random.nextInt(nights - 1);
+						int to = Math.min(nights, from + 1 + random.nextInt(100));
+						BookingRequest bookingRequest = new BookingRequest("1", TODAY.plusDays(from),
+								TODAY.plusDays(to), 2, false);
+						String roomId;
+						try {
+							roomId = sharedRoomService.claimAvailableRoom(bookingRequest);
+						} catch (BusinessException e) {
+							continue;
+						}
+						claimed.incrementAndGet();
+						int base = Integer.parseInt(roomId) * nights;
+						for (int night = from; night < to; night++) {
+							if (owners.incrementAndGet(base + night) > 1) {
+								doubleBookings.incrementAndGet();
+							}
+						}
+						if (random.nextBoolean()) {
+							for (int night = from; night < to; night++) {
+								owners.decrementAndGet(base + night);
+							}
+							sharedRoomService.unbookRoom(roomId, TODAY.plusDays(from), TODAY.plusDays(to));
+						}
+					}
+					done.countDown();
+				});
+			}
+			assertTrue(done.await(60, TimeUnit.SECONDS));
+			executor.shutdown();
+
+			assertTrue(claimed.get() > 0, threads + " thread(s) claimed no room");
+			assertEquals(0, doubleBookings.get());
+			for (int room = 0; room < roomCount; room++) {
+				for (int night = 0; night < nights; night++) {
+					assertEquals(owners.get(room * nights + night) == 0, sharedRoomService.isRoomAvailable(
+							String.valueOf(room), TODAY.plusDays(night), TODAY.plusDays(night + 1)));
+				}
+			}
+		}
+	}
+
+	// consistency: the running place counters must match a full recount after concurrent bookings and cancellations
+	@Test
+	void should_MatchRecount_When_PlacesCountedAfterConcurrentBookings() throws InterruptedException {
+		// given
+		int roomCount = 500;
+		int threads = 4;
+		List<Room> rooms = new ArrayList<>(roomCount);
+		for (int i = 0; i < roomCount; i++) {
+			rooms.add(new Room(String.valueOf(i), 1 + i % 5));
+		}
+		RoomService sharedRoomService = new RoomService(rooms, CLOCK, 30);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+
+		// when
+		for (int t = 0; t < threads; t++) {
+			executor.execute(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < 20_000; i++) {
+					int from = random.nextInt(3);
+					int to = from + 1 + random.nextInt(5);
+					BookingRequest bookingRequest = new BookingRequest("1", TODAY.plusDays(from), TODAY.plusDays(to),
+							1 + random.nextInt(5), false);
+					try {
+						String roomId = sharedRoomService.claimAvailableRoom(bookingRequest);
+						if (random.nextBoolean()) {
+							sharedRoomService.unbookRoom(roomId, TODAY.plusDays(from), TODAY.plusDays(to));
+						}
+					} catch (BusinessException e) {
+						// fully booked for these nights
+					}
+				}
+				done.countDown();
+			});
+		}
+		assertTrue(done.await(60, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		// then
+		int[] recount = new int[6];
+		for (Room room : sharedRoomService.getAvailableRooms()) {
+			recount[0] += room.getCapacity();
+			recount[room.getCapacity()] += room.getCapacity();
+		}
+		assertTrue(recount[0] < 3 * roomCount);
+		assertEquals(recount[0], sharedRoomService.getAvailablePlaceCount());
+		for (int capacity = 1; capacity <= 5; capacity++) {
+			assertEquals(recount[capacity], sharedRoomService.getAvailablePlaceCount(capacity));
+		}
+		assertEquals(0, sharedRoomService.getAvailablePlaceCount(6));
+	}
+
+	@Test
+	void should_RestoreRoomsAndHolds_When_ReopenedFromJournal(@TempDir Path directory) {
+		// given
+		Path file = directory.resolve("rooms.journal");
+		String held;
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC)) {
+			RoomService journaled = new RoomService(ROOMS, CLOCK, 60, journal);
+			journaled.bookRoom("1.1", TODAY, TODAY.plusDays(3));
+			journaled.bookRoom("1.2", TODAY, TODAY.plusDays(2));
+			journaled.unbookRoom("1.2", TODAY, TODAY.plusDays(2));
+			journaled.claimAvailableRoom(new BookingRequest("1", TODAY.plusDays(1), TODAY.plusDays(4), 5, false));
+			journaled.confirm(journaled.hold("2.1", TODAY, TODAY.plusDays(1), Duration.ofMinutes(5)));
+			journaled.release(journaled.hold("2.2", TODAY, TODAY.plusDays(1), Duration.ofMinutes(5)));
+			held = journaled.hold("2.2", TODAY.plusDays(5), TODAY.plusDays(6), Duration.ofMinutes(5));
+		}
+
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC)) {
+			// when
+			RoomService restored = new RoomService(ROOMS, CLOCK, 60, journal);
+
+			// then
+			assertFalse(restored.isRoomAvailable("1.1", TODAY.plusDays(2), TODAY.plusDays(3)));
+			assertTrue(restored.isRoomAvailable("1.2", TODAY, TODAY.plusDays(2)));
+			assertFalse(restored.isRoomAvailable("1.3", TODAY.plusDays(3), TODAY.plusDays(4)));
+			assertTrue(restored.isRoomAvailable("1.3", TODAY, TODAY.plusDays(1)));
+			assertFalse(restored.isRoomAvailable("2.1", TODAY, TODAY.plusDays(1)));
+			assertTrue(restored.isRoomAvailable("2.2", TODAY, TODAY.plusDays(5)));
+			assertFalse(restored.isRoomAvailable("2.2", TODAY.plusDays(5), TODAY.plusDays(6)));
+			assertEquals(11, restored.getAvailablePlaceCount());
+			assertEquals(0, restored.getAvailablePlaceCount(3));
+			assertEquals(1, restored.getHoldCount());
+			restored.confirm(held);
+			assertEquals(0, restored.getHoldCount());
+		}
+	}
+
+	@Test
+	void should_ShiftSnapshotToToday_When_ReopenedOnLaterDay(@TempDir Path directory) {
+		// given
+		Path file = directory.resolve("rooms.journal");
+		List<Room> rooms = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			rooms.add(new Room(String.valueOf(i), 2));
+		}
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 100)) {
+			RoomService journaled = new RoomService(rooms, CLOCK, 100, journal);
+			for (int i = 0; i < rooms.size(); i++) {
+				journaled.bookRoom(String.valueOf(i), TODAY.plusDays(i % 10), TODAY.plusDays(i % 10 + 70));
+			}
+		}
+		assertTrue(Files.exists(directory.resolve("rooms.journal.snapshot")));
+		LocalDate later = TODAY.plusDays(5);
+
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC, 4 * 1024, 100)) {
+			// when
+			RoomService restored = new RoomService(rooms,
+					Clock.fixed(later.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC), 100, journal);
+
+			// then
+			assertEquals(200, restored.getAvailablePlaceCount());
+			assertTrue(restored.isRoomAvailable("9", later, TODAY.plusDays(9)));
+			assertFalse(restored.isRoomAvailable("9", TODAY.plusDays(78), TODAY.plusDays(79)));
+			assertTrue(restored.isRoomAvailable("9", TODAY.plusDays(79), later.plusDays(100)));
+			assertFalse(restored.isRoomAvailable("0", later, later.plusDays(1)));
+			restored.bookRoom("9", later, later.plusDays(1));
+			assertEquals(198, restored.getAvailablePlaceCount());
+		}
+	}
+
+	@Test
+	void should_BookRoomsById_When_CatalogLoadedFromFile(@TempDir Path directory) throws IOException {
+		// given
+		Path file = directory.resolve("rooms.catalog");
+		RoomCatalog.write(file, ROOMS);
+		Path junk = Files.write(directory.resolve("junk.catalog"), new byte[16]);
+
+		// when
+		RoomCatalog catalog = RoomCatalog.load(file);
+		RoomService loaded = new RoomService(catalog, CLOCK);
+		loaded.bookRoom("1.3");
+
+		// then
+		assertEquals(5, loaded.getRoomCount());
+		assertEquals(4, catalog.indexOf("2.2"));
+		assertEquals(-1, catalog.indexOf("2.3"));
+		assertEquals(new Room("2.1", 3), catalog.get(3));
+		assertEquals("2.1", loaded.findAvailableRoomId(new BookingRequest("1", TODAY, TODAY.plusDays(1), 3, false)));
+		assertEquals(11, loaded.getAvailablePlaceCount());
+		assertThrows(BusinessException.class, () -> loaded.bookRoom("2.3"));
+		assertThrows(IllegalArgumentException.class,
+				() -> RoomCatalog.write(file, Arrays.asList(new Room("1.1", 2), new Room("1.1", 3))));
+		assertThrows(IllegalArgumentException.class,
+				() -> RoomCatalog.of(Arrays.asList(new Room("1.1", 2), new Room("1.1", 3))));
+		assertThrows(IllegalArgumentException.class, () -> RoomCatalog.load(junk));
+	}
+
+	@Test
+	void should_KeepBookingsAndHolds_When_CatalogReloaded(@TempDir Path directory) {
+		// given
+		Path file = directory.resolve("rooms.journal");
+		List<Room> reloadedRooms = Arrays.asList(
+				new Room("2.2", 4),
+				new Room("1.1", 2),
+				new Room("3.1", 6),
+				new Room("1.3", 5),
+				new Room("2.1", 3));
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC)) {
+			RoomService journaled = new RoomService(RoomCatalog.of(ROOMS), CLOCK, 60, AllocationPolicy.BEST_FIT,
+					journal);
+			journaled.bookRoom("1.1", TODAY, TODAY.plusDays(3));
+			String held = journaled.hold("2.2", TODAY, TODAY.plusDays(1), Duration.ofMinutes(5));
+
+			// when
+			journaled.reload(RoomCatalog.of(reloadedRooms));
+
+			// then
+			assertEquals(14, journaled.getAvailablePlaceCount());
+			assertFalse(journaled.isRoomAvailable("1.1", TODAY.plusDays(2), TODAY.plusDays(3)));
+			assertThrows(BusinessException.class, () -> journaled.bookRoom("1.2"));
+			assertEquals("3.1",
+					journaled.claimAvailableRoom(new BookingRequest("1", TODAY, TODAY.plusDays(1), 6, false)));
+			journaled.release(held);
+			assertEquals(12, journaled.getAvailablePlaceCount());
+			assertThrows(IllegalStateException.class, () -> journaled.reload(RoomCatalog.of(ROOMS)));
+			assertEquals(12, journaled.getAvailablePlaceCount());
+		}
+
+		try (Journal journal = new Journal(file, Journal.Durability.SYNC)) {
+			RoomService restored = new RoomService(RoomCatalog.of(reloadedRooms), CLOCK, 60,
+					AllocationPolicy.BEST_FIT, journal);
+			assertEquals(12, restored.getAvailablePlaceCount());
+			assertFalse(restored.isRoomAvailable("1.1", TODAY.plusDays(2), TODAY.plusDays(3)));
+			assertTrue(restored.isRoomAvailable("2.2", TODAY, TODAY.plusDays(1)));
+		}
+	}
+
+	// stress: catalogs are swapped back and forth while rooms are claimed and released, no change may be lost in a swap
+	@Test
+	void should_KeepEveryClaim_When_CatalogReloadedWhileBooking() throws InterruptedException {
+		// given
+		int roomCount = 200;
+		int nights = 30;
+		int threads = 4;
+		List<Room> rooms = new ArrayList<>(roomCount);
+		for (int i = 0; i < roomCount; i++) {
+			rooms.add(new Room(String.valueOf(i), 2));
+		}
+		List<Room> reversed = new ArrayList<>(rooms);
+		Collections.reverse(reversed);
+		reversed.add(new Room("single", 1));
+		RoomService sharedRoomService = new RoomService(rooms, CLOCK, nights);
+		AtomicIntegerArray claims = new AtomicIntegerArray(roomCount * nights);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+
+		// when
+		for (int t = 0; t < threads; t++) {
+			executor.execute(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < 2_000; i++) {
+					int night = random.nextInt(nights);
+					String roomId = sharedRoomService.tryClaimAvailableRoom(
+							new BookingRequest("1", TODAY.plusDays(night), TODAY.plusDays(night + 1), 2, false));
+					if (roomId != null && random.nextInt(4) == 0) {
+						sharedRoomService.unbookRoom(roomId, TODAY.plusDays(night), TODAY.plusDays(night + 1));
+					} else if (roomId != null) {
+						claims.incrementAndGet(Integer.parseInt(roomId) * nights + night);
+					}
+				}
+				done.countDown();
+			});
+		}
+		for (int reload = 0; done.getCount() > 0; reload++) {
+			sharedRoomService.reload(RoomCatalog.of(reload % 2 == 0 ? reversed : rooms));
+		}
+		executor.shutdown();
+
+		// then
+		int claimedTonight = 0;
+		for (int room = 0; room < roomCount; room++) {
+			claimedTonight += claims.get(room * nights);
+			for (int night = 0; night < nights; night++) {
+				assertTrue(claims.get(room * nights + night) <= 1);
+				assertEquals(claims.get(room * nights + night) == 0, sharedRoomService
+						.isRoomAvailable(String.valueOf(room), TODAY.plusDays(night), TODAY.plusDays(night + 1)));
+			}
+		}
+		assertEquals(2 * (roomCount - claimedTonight), sharedRoomService.getAvailablePlaceCount(2));
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SingleWriterRoomServiceTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+	private static final Clock CLOCK = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+	private RoomService wrappedService;
+
+	private SingleWriterRoomService roomService;
+
+	@BeforeEach
+	void setup() {
+		List<Room> rooms = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			rooms.add(new Room(String.valueOf(i), 2));
+		}
+		this.wrappedService = new RoomService(rooms, CLOCK, 30);
+		this.roomService = new SingleWriterRoomService(wrappedService, 64);
+	}
+
+	@AfterEach
+	void tearDown() {
+		roomService.close();
+		wrappedService.close();
+	}
+
+	@Test
+	void should_ClaimEachRoomOnce_When_ManyProducersPublish() throws Exception {
+		// given
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		Set<String> claimed = ConcurrentHashMap.newKeySet();
+		List<Future<Integer>> rejected = new ArrayList<>();
+
+		// when
+		for (int t = 0; t < 8; t++) {
+			rejected.add(executor.submit(() -> {
+				int rejections = 0;
+				for (int i = 0; i < 20; i++) {
+					try {
+						assertTrue(claimed.add(roomService
+								.claimAvailableRoom(new BookingRequest("1", TODAY, TODAY.plusDays(3), 2, false))));
+					} catch (BusinessException e) {
+						rejections++;
+					}
+				}
+				return rejections;
+			}));
+		}
+		int rejections = 0;
+		for (Future<Integer> future : rejected) {
+			rejections += future.get();
+		}
+		executor.shutdown();
+
+		// then
+		assertEquals(50, claimed.size());
+		assertEquals(8 * 20 - 50, rejections);
+		assertEquals(0, roomService.getAvailablePlaceCount());
+	}
+
+	@Test
+	void should_CompleteFuturesInOrder_When_MutationsPublishedAsync() throws Exception {
+		// when
+		CompletableFuture<Void> booked = roomService.bookRoomAsync("7", TODAY, TODAY.plusDays(2));
+		CompletableFuture<Void> bookedTwice = roomService.bookRoomAsync("7", TODAY.plusDays(1), TODAY.plusDays(2));
+		CompletableFuture<Void> unbooked = roomService.unbookRoomAsync("7", TODAY, TODAY.plusDays(2));
+
+		// then
+		booked.get();
+		ExecutionException exception = assertThrows(ExecutionException.class, bookedTwice::get);
+		assertTrue(exception.getCause() instanceof BusinessException);
+		unbooked.get();
+		assertTrue(roomService.isRoomAvailable("7", TODAY, TODAY.plusDays(2)));
+	}
+
+	@Test
+	void should_BookAndCancel_When_BookingServiceUsesSingleWriter() {
+		// given
+		RoomService rooms = new RoomService(Arrays.asList(new Room("1.1", 2)), CLOCK, 30);
+		BookingService bookingService = new BookingService(mock(PaymentService.class), rooms, new BookingDAO(),
+				mock(MailSender.class), EngineMode.SINGLE_WRITER);
+		BookingRequest bookingRequest = new BookingRequest("1", TODAY, TODAY.plusDays(2), 2, false);
+
+		// when
+		String bookingId = bookingService.makeBooking(bookingRequest);
+
+		// then
+		assertThrows(BusinessException.class,
+				() -> bookingService.makeBooking(new BookingRequest("2", TODAY, TODAY.plusDays(1), 2, false)));
+		bookingService.cancelBooking(bookingId);
+		assertEquals(2, bookingService.getAvailablePlaceCount());
+		bookingService.close();
+		rooms.close();
+	}
+
+	@Test
+	void should_ApplyHoldsOnWriterThread_When_HoldConfirmedOrReleased() throws Exception {
+		// given
+		String confirmed = roomService.holdAsync("1", TODAY, TODAY.plusDays(2), Duration.ofMinutes(5)).get();
+		String released = roomService.holdAsync("2", TODAY, TODAY.plusDays(2), Duration.ofMinutes(5)).get();
+
+		// when
+		roomService.confirm(confirmed);
+		roomService.release(released);
+
+		// then
+		assertEquals(0, roomService.getHoldCount());
+		assertEquals(98, roomService.getAvailablePlaceCount());
+		assertThrows(BusinessException.class, () -> roomService.hold("1", TODAY, TODAY.plusDays(1),
+				Duration.ofMinutes(5)));
+	}
+
+	@Test
+	void should_HoldTonightInWrappedService_When_HeldWithoutDates() {
+		// when
+		roomService.hold("3", Duration.ofMinutes(5));
+
+		// then
+		assertEquals(1, roomService.getHoldCount());
+		assertFalse(roomService.isRoomAvailable("3", TODAY, TODAY.plusDays(1)));
+		assertTrue(roomService.isRoomAvailable("3", TODAY.plusDays(1), TODAY.plusDays(2)));
+	}
+}
@@ -0,0 +1,43 @@
+package com.mockitotutorial.happyhotel.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+	@Test
+	void should_KeepExpiringAndParkWhenIdle_When_HandlerThrows() throws InterruptedException {
+		// given
+		AtomicReference<Thread> ticker = new AtomicReference<>();
+		CountDownLatch expired = new CountDownLatch(1);
+		TimingWheel<String> wheel = new TimingWheel<>(1, TimeUnit.MILLISECONDS, 8, item -> {
+			ticker.set(Thread.currentThread());
+			if (item.equals("failing")) {
+				throw new IllegalStateException(item);
+			}
+			expired.countDown();
+		});
+
+		// when
+		wheel.schedule("failing", 1, TimeUnit.MILLISECONDS);
+		wheel.schedule("next", 20, TimeUnit.MILLISECONDS);
+
+		// then
+		assertTrue(expired.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 500 && ticker.get().getState() != Thread.State.WAITING; i++) {
+			Thread.sleep(1);
+		}
+		assertEquals(Thread.State.WAITING, ticker.get().getState());
+		wheel.close();
+		ticker.get().join(5_000);
+		assertFalse(ticker.get().isAlive());
+	}
+
+}